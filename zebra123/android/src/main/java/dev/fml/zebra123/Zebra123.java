@@ -1,13 +1,18 @@
 package dev.fml.zebra123;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 
+import java.io.File;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
@@ -27,16 +32,31 @@ public class Zebra123 implements FlutterPlugin, MethodCallHandler, StreamHandler
   private MethodChannel methodHandler;
   private EventChannel eventHandler;
 
-  private ZebraDevice device;
+  // process wide owner of the device, shared with other engines and the background service
+  private ZebraHub hub;
+
+  private EventSink sink;
+
+  // queues the events sent on the event channels, shared with other engines
+  private ZebraEventQueue events;
+
+  // this engine's sinks and subscription
+  private final ZebraEventQueue.Engine engine = new ZebraEventQueue.Engine();
+
+  // barcode, rfid and metrics event channels. control events use the event channel
+  private final ArrayList<EventChannel> channels = new ArrayList<>();
+
+  private final ZebraMetrics metrics = ZebraMetrics.shared;
+
+  // pushes the metrics event. null when not pushing metrics
+  private Runnable metricsTask;
+  private Handler handler;
 
   private Context context;
 
   private final String METHODCHANNEL = "dev.fml.zebra123/method";
   private final String EVENTCHANNEL = "dev.fml.zebra123/event";
 
-  boolean supportsRfid = false;
-  boolean supportsDatawedge = false;
-
   // returns the package name
   public static String getPackageName(Context context) {
     if (context == null) return "unknown";
@@ -55,6 +75,20 @@ public class Zebra123 implements FlutterPlugin, MethodCallHandler, StreamHandler
     return context.getPackageName() + "." + "ACTION";
   }
 
+  // returns the background service intent action
+  public static String getServiceActionName(Context context) {
+    if (context == null) return "unknown";
+    return context.getPackageName() + "." + "service.ACTION";
+  }
+
+  // returns the recording file. a name without a path is placed in the app's files directory
+  public static File getRecordingFile(Context context, String name) {
+    if (name == null || name.trim().length() == 0) name = "session-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".z123";
+    File file = new File(name);
+    if (file.isAbsolute()) return file;
+    return new File(new File(context.getFilesDir(), "recordings"), name);
+  }
+
   // returns the log tag name
   public static String getTagName(Context context) {
     return getPackageName(context) + "." + "ZEBRA";
@@ -69,20 +103,43 @@ public class Zebra123 implements FlutterPlugin, MethodCallHandler, StreamHandler
     methodHandler = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), METHODCHANNEL);
     methodHandler.setMethodCallHandler(this);
 
+    // the device and its events are shared by every engine in the process
+    hub = ZebraHub.acquire(context);
+    events = hub.events;
+    events.attach(engine);
+
     eventHandler = new EventChannel(flutterPluginBinding.getBinaryMessenger(), EVENTCHANNEL);
     eventHandler.setStreamHandler(this);
+
+    // a channel per priority, so bulk events never hold up control and barcode events
+    for (ZebraEventQueue.Channels channel : ZebraEventQueue.Channels.values()) {
+      if (channel == ZebraEventQueue.Channels.control) continue;
+      EventChannel handler = new EventChannel(flutterPluginBinding.getBinaryMessenger(), channel.name);
+      handler.setStreamHandler(events.handler(engine, channel));
+      channels.add(handler);
+    }
   }
 
   @Override
   public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
-    disconnect();
+    pushMetrics(0);
+
+    // the device is disconnected once no other engine, or the background service, holds the hub
+    events.detach(engine);
+    ZebraHub.release();
+
     methodHandler.setMethodCallHandler(null);
     eventHandler.setStreamHandler(null);
+    for (EventChannel channel : channels) channel.setStreamHandler(null);
+    channels.clear();
   }
 
   @Override
   public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
 
+    long started = System.nanoTime();
+    metrics.methods.mark();
+
     // get method
     ZebraDevice.Methods method = ZebraDevice.Methods.unknown;
     try {
@@ -90,6 +147,11 @@ public class Zebra123 implements FlutterPlugin, MethodCallHandler, StreamHandler
     }
     catch(Exception e) {}
 
+    // value returned to flutter
+    Object response = null;
+
+    ZebraDevice device = hub.getDevice();
+
     switch (method) {
 
       case track:
@@ -99,21 +161,91 @@ public class Zebra123 implements FlutterPlugin, MethodCallHandler, StreamHandler
           try {
             request = ZebraDevice.Requests.valueOf(argument(call,"request"));
             String tags = argument(call,"tags");
-            if (tags!= null) list.addAll(Arrays.asList(tags.split(",")));
+            if (tags!= null && tags.length() > 0) list.addAll(Arrays.asList(tags.split(",")));
+
+            // large lists come encoded
+            byte[] epcs = call.argument("epcs");
+            if (epcs != null) list.addAll(ZebraEpcCodec.decode(epcs));
           }
           catch(Exception e) {}
           device.track(request, list);
         }
         break;
 
-      case scan:
+      case session:
         if (device != null) {
           ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          ZebraDevice.Notifies notify = ZebraDevice.Notifies.change;
+          ArrayList<String> list = new ArrayList<>();
           try {
             request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            notify = ZebraDevice.Notifies.valueOf(argument(call,"notify"));
+            String tags = argument(call,"tags");
+            if (tags!= null && tags.length() > 0) list.addAll(Arrays.asList(tags.split(",")));
+            byte[] epcs = call.argument("epcs");
+            if (epcs != null) list.addAll(ZebraEpcCodec.decode(epcs));
+          }
+          catch(Exception e) {}
+          response = device.session(request, argument(call,"name"), list, notify);
+        }
+        break;
+
+      case trigger:
+        if (device != null) {
+          int debounce = -1;
+          int minimum = -1;
+          try {
+            debounce = Integer.parseInt(argument(call,"debounce"));
+            minimum = Integer.parseInt(argument(call,"minimum"));
           }
           catch(Exception e) {}
-          device.scan(request);
+          response = device.trigger(debounce, minimum);
+        }
+        break;
+
+      case cycle:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          int period = 2000;
+          int duty = 50;
+          int minimum = 10;
+          int warm = 45;
+          int hot = 60;
+          int battery = 20;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            if (request == ZebraDevice.Requests.start) {
+              period = Integer.parseInt(argument(call,"period"));
+              duty = Integer.parseInt(argument(call,"duty"));
+              minimum = Integer.parseInt(argument(call,"minimum"));
+              warm = Integer.parseInt(argument(call,"warm"));
+              hot = Integer.parseInt(argument(call,"hot"));
+              battery = Integer.parseInt(argument(call,"battery"));
+            }
+          }
+          catch(Exception e) {
+            Log.e(getTagName(context), "Error parsing duty cycle" + e.getMessage());
+          }
+          response = device.cycle(request, period, duty, minimum, warm, hot, battery);
+        }
+        break;
+
+      case scan:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          ZebraReader.Stop stop = null;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            String type = argument(call,"stop");
+            if (type.length() > 0) {
+              stop = new ZebraReader.Stop(ZebraDevice.Stops.valueOf(type), Integer.parseInt(argument(call,"count")), Integer.parseInt(argument(call,"timeout")));
+              if (!stop.isValid()) stop = null;
+            }
+          }
+          catch(Exception e) {
+            Log.e(getTagName(context), "Error parsing stop condition" + e.getMessage());
+          }
+          device.scan(request, stop);
         }
         break;
 
@@ -128,6 +260,320 @@ public class Zebra123 implements FlutterPlugin, MethodCallHandler, StreamHandler
         }
         break;
 
+      case aggregate:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          int interval = 0;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            interval = Integer.parseInt(argument(call,"interval"));
+          }
+          catch(Exception e) {}
+          device.aggregate(request, interval);
+        }
+        break;
+
+      case manifest:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          ArrayList<String> list = new ArrayList<>();
+          boolean autoStop = false;
+          int interval = 0;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            String tags = argument(call,"tags");
+            if (tags!= null && tags.length() > 0) list.addAll(Arrays.asList(tags.split(",")));
+            byte[] epcs = call.argument("epcs");
+            if (epcs != null) list.addAll(ZebraEpcCodec.decode(epcs));
+            autoStop = Boolean.parseBoolean(argument(call,"autoStop"));
+            interval = Integer.parseInt(argument(call,"interval"));
+          }
+          catch(Exception e) {}
+          device.manifest(request, list, autoStop, interval);
+        }
+        break;
+
+      case statistics:
+        if (device != null) {
+          ArrayList<ZebraDevice.Statistics> list = new ArrayList<>();
+          String fields = argument(call,"fields");
+          if (fields != null && fields.length() > 0) {
+            for (String field : fields.split(",")) {
+              try {
+                list.add(ZebraDevice.Statistics.valueOf(field.trim()));
+              }
+              catch(Exception e) {}
+            }
+          }
+          device.statistics(list);
+        }
+        break;
+
+      case nearest:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          int size = 0;
+          int interval = 0;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            size = Integer.parseInt(argument(call,"size"));
+            interval = Integer.parseInt(argument(call,"interval"));
+          }
+          catch(Exception e) {}
+          device.nearest(request, size, interval);
+        }
+        break;
+
+      case estimate:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          boolean perAntenna = false;
+          int bucket = 0;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            perAntenna = Boolean.parseBoolean(argument(call,"perAntenna"));
+            bucket = Integer.parseInt(argument(call,"bucket"));
+          }
+          catch(Exception e) {}
+          device.estimate(request, perAntenna, bucket);
+        }
+        break;
+
+      case sketch:
+        if (device != null) {
+          byte[] merge = null;
+          try {
+            merge = call.argument("merge");
+          }
+          catch(Exception e) {}
+          response = device.sketch(merge);
+        }
+        break;
+
+      case budget:
+        if (device != null) {
+          long bytes = -1;
+          try {
+            bytes = Long.parseLong(argument(call,"bytes"));
+          }
+          catch(Exception e) {}
+          response = device.budget(bytes);
+        }
+        break;
+
+      case query:
+        if (device != null) {
+          ZebraDevice.Queries query = ZebraDevice.Queries.unknown;
+          ZebraDevice.Sorts sort = ZebraDevice.Sorts.lastSeen;
+          int offset = 0;
+          int limit = 0;
+          try {
+            query = ZebraDevice.Queries.valueOf(argument(call,"query"));
+            offset = Integer.parseInt(argument(call,"offset"));
+            limit = Integer.parseInt(argument(call,"limit"));
+            sort = ZebraDevice.Sorts.valueOf(argument(call,"sort"));
+          }
+          catch(Exception e) {}
+          response = device.query(query, offset, limit, sort, argument(call,"prefix"));
+        }
+        break;
+
+      case record:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+          }
+          catch(Exception e) {}
+          response = device.record(request, argument(call,"file"));
+        }
+        break;
+
+      case transport:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          int capacity = 0;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            capacity = Integer.parseInt(argument(call,"capacity"));
+          }
+          catch(Exception e) {}
+          response = device.transport(request, capacity);
+        }
+        break;
+
+      case delta:
+        if (device != null) {
+          device.delta(Boolean.parseBoolean(argument(call,"enabled")));
+        }
+        break;
+
+      case resync:
+        if (device != null) {
+          device.resync(engine);
+        }
+        break;
+
+      case filter:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          ZebraFilter filter = null;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            if (request == ZebraDevice.Requests.start) {
+
+              Integer rssi = null;
+              String floor = argument(call,"rssi");
+              if (floor != null && floor.length() > 0 && !floor.equals("null")) rssi = Integer.parseInt(floor);
+
+              ArrayList<Short> antennas = new ArrayList<>();
+              String ids = argument(call,"antennas");
+              if (ids != null && ids.length() > 0) {
+                for (String id : ids.split(",")) antennas.add(Short.parseShort(id.trim()));
+              }
+
+              ArrayList<String> include = new ArrayList<>();
+              String epcs = argument(call,"include");
+              if (epcs != null && epcs.length() > 0) include.addAll(Arrays.asList(epcs.split(",")));
+
+              ArrayList<String> exclude = new ArrayList<>();
+              epcs = argument(call,"exclude");
+              if (epcs != null && epcs.length() > 0) exclude.addAll(Arrays.asList(epcs.split(",")));
+
+              ZebraFilter.Mask epcMask = new ZebraFilter.Mask(argument(call,"epcValue"), argument(call,"epcMask"), Integer.parseInt(argument(call,"epcOffset")));
+              ZebraFilter.Mask tidMask = new ZebraFilter.Mask(argument(call,"tidValue"), argument(call,"tidMask"), Integer.parseInt(argument(call,"tidOffset")));
+              int interval = Integer.parseInt(argument(call,"interval"));
+
+              filter = ZebraFilter.compile(rssi, antennas, include, exclude, epcMask, tidMask, interval);
+            }
+          }
+          catch(Exception e) {
+            Log.e(getTagName(context), "Error parsing filter" + e.getMessage());
+            request = ZebraDevice.Requests.unknown;
+          }
+
+          // a spec without rules stops filtering
+          if (request == ZebraDevice.Requests.start && filter == null) request = ZebraDevice.Requests.stop;
+          response = device.filter(request, filter);
+        }
+        break;
+
+      case replay:
+        if (sink != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          double speed = 1;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            speed = Double.parseDouble(argument(call,"speed"));
+          }
+          catch(Exception e) {}
+          hub.replay(request, getRecordingFile(context, argument(call,"file")), speed);
+        }
+        break;
+
+      case stats:
+        {
+          boolean reset = Boolean.parseBoolean(argument(call,"reset"));
+          response = metrics.toMap();
+          if (reset) metrics.reset();
+        }
+        break;
+
+      case trace:
+        {
+          boolean reset = Boolean.parseBoolean(argument(call,"reset"));
+          response = ZebraTrace.shared.toMap();
+          if (reset) ZebraTrace.shared.reset();
+        }
+        break;
+
+      case delivery:
+        {
+          int interval = -1;
+          try {
+            interval = Integer.parseInt(argument(call,"interval"));
+          }
+          catch(Exception e) {}
+          if (interval >= 0) ZebraEventQueue.setInterval(interval);
+          response = ZebraEventQueue.getInterval();
+        }
+        break;
+
+      case flow:
+        {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          ZebraDevice.Overflows overflow = ZebraDevice.Overflows.merge;
+          long credits = 0;
+          int limit = 0;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            credits = Long.parseLong(argument(call,"credits"));
+            overflow = ZebraDevice.Overflows.valueOf(argument(call,"overflow"));
+            limit = Integer.parseInt(argument(call,"limit"));
+          }
+          catch(Exception e) {}
+          events.flow(engine, request == ZebraDevice.Requests.start, credits, overflow, limit);
+          response = events.getFlow();
+        }
+        break;
+
+      case credit:
+        {
+          long credits = 0;
+          try {
+            credits = Long.parseLong(argument(call,"credits"));
+          }
+          catch(Exception e) {}
+          events.credit(engine, credits);
+        }
+        break;
+
+      case background:
+        if (device != null) {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+          }
+          catch(Exception e) {}
+          if (request == ZebraDevice.Requests.start) ZebraService.start(context, call.argument("title"), call.argument("text"));
+          if (request == ZebraDevice.Requests.stop) ZebraService.stop(context);
+          response = ZebraService.isRunning();
+        }
+        break;
+
+      case subscribe:
+        {
+          ArrayList<ZebraDevice.Events> list = new ArrayList<>();
+          String names = argument(call,"events");
+          if (names != null && names.length() > 0) {
+            for (String name : names.split(",")) {
+              try {
+                list.add(ZebraDevice.Events.valueOf(name.trim()));
+              }
+              catch(Exception e) {}
+            }
+          }
+          ArrayList<String> prefixes = new ArrayList<>();
+          String prefix = argument(call,"prefixes");
+          if (prefix != null && prefix.length() > 0) prefixes.addAll(Arrays.asList(prefix.split(",")));
+          engine.subscribe(list, prefixes);
+          response = engine.getSubscription();
+        }
+        break;
+
+      case metrics:
+        {
+          ZebraDevice.Requests request = ZebraDevice.Requests.unknown;
+          int interval = 0;
+          try {
+            request = ZebraDevice.Requests.valueOf(argument(call,"request"));
+            interval = Integer.parseInt(argument(call,"interval"));
+          }
+          catch(Exception e) {}
+          pushMetrics(request == ZebraDevice.Requests.start ? Math.max(100, interval > 0 ? interval : 1000) : 0);
+        }
+        break;
+
       case write:
         if (device != null) {
           String epc         = argument(call,"epc");
@@ -144,30 +590,52 @@ public class Zebra123 implements FlutterPlugin, MethodCallHandler, StreamHandler
         Toast.makeText(context, "Method " + call.method + " not implemented", Toast.LENGTH_LONG).show();
     }
 
-    result.success(null);
+    metrics.methodTime.record((System.nanoTime() - started) / 1000);
+    result.success(response);
+  }
+
+  // sends the metrics event every interval ms. 0 stops sending
+  private void pushMetrics(final int interval) {
+
+    if (handler == null) handler = new Handler(Looper.getMainLooper());
+
+    if (metricsTask != null) handler.removeCallbacks(metricsTask);
+    metricsTask = null;
+
+    if (interval <= 0) return;
+
+    metricsTask = new Runnable() {
+      @Override
+      public void run() {
+        if (metricsTask != this) return;
+        sendEvent(ZebraDevice.Events.metrics, metrics.toMap());
+        handler.postDelayed(this, interval);
+      }
+    };
+    handler.postDelayed(metricsTask, interval);
   }
 
   @Override
   public void onListen(Object arguments, EventChannel.EventSink sink) {
 
-    // set connection support
-    supportsRfid = ZebraRfid.isSupported(context);
-    supportsDatawedge = ZebraDataWedge.isSupported(context);
+    this.sink = sink;
+    events.setSink(engine, ZebraEventQueue.Channels.control, sink);
 
     // notify device support
     HashMap<String, Object> map = new HashMap<>();
-    map.put(ZebraDevice.Interfaces.rfidapi3.toString(),supportsRfid ? "true" : "false");
-    map.put(ZebraDevice.Interfaces.datawedge.toString(),supportsDatawedge ? "true" : "false");
-    sendEvent(sink, ZebraDevice.Events.support,map);
+    map.put(ZebraDevice.Interfaces.rfidapi3.toString(),hub.supportsRfid ? "true" : "false");
+    map.put(ZebraDevice.Interfaces.datawedge.toString(),hub.supportsDatawedge ? "true" : "false");
+    sendEvent(ZebraDevice.Events.support,map);
 
-    // connect the device
-    connect(sink);
+    // connect the device once per process. later engines adopt it
+    if (!hub.connect()) adopt();
   }
 
   @Override
   public void onCancel(Object arguments) {
 
     Log.w(getTagName(context), "cancelling listener");
+    events.setSink(engine, ZebraEventQueue.Channels.control, null);
   }
 
   String argument(MethodCall call, String key) {
@@ -179,63 +647,32 @@ public class Zebra123 implements FlutterPlugin, MethodCallHandler, StreamHandler
     }
   }
 
-  private void connect(EventSink sink) {
+  // takes over the device connected by another engine, or kept reading by the background
+  // service. the shared ring has a single reader, so it is stopped. flutter is told to request a
+  // snapshot, which hands over every tag read so far in a single event
+  private void adopt() {
 
     try {
 
-      // disconnect if already connected
-      if (device != null) device.disconnect();
-      device = null;
+      ZebraDevice device = hub.getDevice();
+      if (device == null) return;
 
-      // device supports rfid?
-      if (supportsRfid) {
-        device = new ZebraRfid(context, sink);
-        device.connect();
-      }
+      device.transport(ZebraDevice.Requests.stop, 0);
 
-      // datawedge supported?
-      else if (supportsDatawedge) {
-        device = new ZebraDataWedge(context, sink);
-        device.connect();
-      }
-
-      // no supported device
-      else {
-        HashMap<String, Object> map =new HashMap<>();
-        map.put("status", ZebraDevice.ZebraConnectionStatus.error.toString());
-
-        // notify device
-        sendEvent(sink, ZebraDevice.Events.connectionStatus,map);
-      }
+      HashMap<String, Object> map = new HashMap<>();
+      map.put("status", ZebraDevice.ZebraConnectionStatus.connected.toString());
+      map.put("shared", true);
+      sendEvent(ZebraDevice.Events.connectionStatus, map);
     }
     catch(Exception e) {
-        Log.e(getTagName(context), "Error connecting to device" + e.getMessage());
-        sendEvent(sink, ZebraDevice.Events.error, ZebraDevice.toError("Error during connect()", e));
+        Log.e(getTagName(context), "Error adopting shared device" + e.getMessage());
+        sendEvent(ZebraDevice.Events.error, ZebraDevice.toError("Error during adopt()", e));
     }
   }
 
-  private void disconnect() {
-    if (device != null) {
-      device.disconnect();
-    }
-  }
+  public void sendEvent(final ZebraDevice.Events event, final HashMap map) {
 
-  public void sendEvent(final EventSink sink, final ZebraDevice.Events event, final HashMap map) {
-
-    if (sink == null) {
-      Log.e(getTagName(context), "Can't send notification to flutter. Sink is null");
-      return;
-    }
-
-    try
-    {
-      map.put("eventSource", INTERFACE.toString());
-      map.put("eventName", event.toString());
-      sink.success(map);
-    }
-    catch (Exception e)
-    {
-      Log.e(getTagName(context), "Error sending notification to flutter. Error: " + e.getMessage());
-    }
+    // delivered on the main thread on the event's channel, to this engine only
+    events.send(engine, INTERFACE, event, map);
   }
 }
@@ -0,0 +1,596 @@
+package dev.fml.zebra123;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.zebra.rfid.api3.ACCESS_OPERATION_CODE;
+import com.zebra.rfid.api3.Antennas;
+import com.zebra.rfid.api3.BATCH_MODE;
+import com.zebra.rfid.api3.BEEPER_VOLUME;
+import com.zebra.rfid.api3.DYNAMIC_POWER_OPTIMIZATION;
+import com.zebra.rfid.api3.ENUM_TRANSPORT;
+import com.zebra.rfid.api3.ENUM_TRIGGER_MODE;
+import com.zebra.rfid.api3.HANDHELD_TRIGGER_EVENT_TYPE;
+import com.zebra.rfid.api3.INVENTORY_STATE;
+import com.zebra.rfid.api3.InvalidUsageException;
+import com.zebra.rfid.api3.MEMORY_BANK;
+import com.zebra.rfid.api3.OperationFailureException;
+import com.zebra.rfid.api3.RFIDReader;
+import com.zebra.rfid.api3.ReaderDevice;
+import com.zebra.rfid.api3.Readers;
+import com.zebra.rfid.api3.RegionInfo;
+import com.zebra.rfid.api3.RegulatoryConfig;
+import com.zebra.rfid.api3.RfidEventsListener;
+import com.zebra.rfid.api3.RfidReadEvents;
+import com.zebra.rfid.api3.RfidStatusEvents;
+import com.zebra.rfid.api3.SESSION;
+import com.zebra.rfid.api3.SL_FLAG;
+import com.zebra.rfid.api3.START_TRIGGER_TYPE;
+import com.zebra.rfid.api3.STATUS_EVENT_TYPE;
+import com.zebra.rfid.api3.STOP_TRIGGER_TYPE;
+import com.zebra.rfid.api3.StopTrigger;
+import com.zebra.rfid.api3.TAG_FIELD;
+import com.zebra.rfid.api3.TagAccess;
+import com.zebra.rfid.api3.TagData;
+import com.zebra.rfid.api3.TagStorageSettings;
+import com.zebra.rfid.api3.TriggerInfo;
+
+import java.util.ArrayList;
+
+import dev.fml.zebra123.ZebraDevice.Modes;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// reader backed by the rfid api3 library
+public class ZebraApi3Reader implements ZebraReader, RfidEventsListener {
+
+    private final Context context;
+    private RFIDReader reader;
+    private Listener listener;
+    private Modes mode = Modes.mixed;
+
+    // true while an inventory runs. the reader stays configured between runs, so a run that isn't
+    // running starts with a single perform() rather than a stop() and perform()
+    private volatile boolean running = false;
+
+    // the stop condition the reader is configured with. null for the immediate stop trigger
+    private Stop bounded = null;
+
+    // inventory stop events still to come for stops from the host. only the remaining stop
+    // events were raised by the reader ending a bounded inventory
+    private int stops = 0;
+
+    // read the tid bank with each tag, whether the access sequence that reads it is configured,
+    // and whether the running inventory is that sequence rather than a plain inventory
+    private volatile boolean tid = false;
+    private boolean tidArmed = false;
+    private boolean sequence = false;
+
+    ZebraApi3Reader(Context context) {
+        this.context = context;
+    }
+
+    public static boolean isSupported(Context context) {
+
+        try {
+            Readers readers = new Readers(context, ENUM_TRANSPORT.ALL);
+            if (readers.GetAvailableRFIDReaderList().size() > 0) return true;
+        }
+        catch(Exception e) {
+            Log.d(Zebra123.getTagName(context), "Reader does not support RFID");
+        }
+        return false;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public boolean connect() {
+        try {
+            if (reader == null) {
+                Readers readers = new Readers(context,ENUM_TRANSPORT.ALL);
+                ArrayList<ReaderDevice> rfidReaders = readers.GetAvailableRFIDReaderList();
+                if (rfidReaders.size() > 0) {
+                    ReaderDevice device = rfidReaders.get(0);
+                    reader = device.getRFIDReader();
+
+                    //setRegulatoryConfig();
+                }
+                else {
+                    Log.e(Zebra123.getTagName(context),"No connectable rfid devices found");
+                }
+            }
+
+            if (reader != null) {
+                reader.connect();
+                ConfigureReader();
+            }
+        }
+        catch (Exception e)
+        {
+            Log.d(Zebra123.getTagName(context), e.toString());
+        }
+        return isConnected();
+    }
+
+    @Override
+    public void disconnect() {
+        try {
+            if (reader != null) reader.Events.removeEventsListener(this);
+            //reader = null;
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context),"Error disconnecting from RFID reader. Error is " + e.toString());
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        if (reader != null && reader.isConnected())
+            return true;
+        else {
+            if (reader == null)
+                 Log.d(Zebra123.getTagName(context), "Reader is null");
+            else Log.d(Zebra123.getTagName(context), "Reader is not connected");
+            return false;
+        }
+    }
+
+    @Override
+    public void startInventory() throws Exception {
+        startInventory(null);
+    }
+
+    @Override
+    public synchronized void startInventory(Stop stop) throws Exception {
+        if (reader == null) throw new Exception("Reader is null");
+        if (running) {
+            stops++;
+            stop();
+        }
+
+        // the stop trigger is only configured when it changes, so open ended runs stay armed
+        if (stop != null || bounded != null) setStopTrigger(stop);
+        bounded = stop;
+
+        // the tid is read by an access sequence, which inventories the tags and reads each one
+        sequence = tid;
+        if (sequence) {
+            if (!tidArmed) setTidSequence();
+            reader.Actions.TagAccess.OperationSequence.performSequence();
+        }
+        else reader.Actions.Inventory.perform();
+        running = true;
+    }
+
+    @Override
+    public synchronized void stopInventory() throws Exception {
+        if (reader == null) throw new Exception("Reader is null");
+        if (running) stops++;
+        running = false;
+        stop();
+    }
+
+    // stops the plain inventory or the access sequence, whichever was started
+    private void stop() throws Exception {
+        if (sequence) reader.Actions.TagAccess.OperationSequence.stopSequence();
+        else reader.Actions.Inventory.stop();
+    }
+
+    @Override
+    public synchronized void readTid(boolean read) {
+        tid = read;
+    }
+
+    // configures the access sequence with a single read of the whole tid bank, and has the reader
+    // report the access results with the tags
+    private void setTidSequence() throws Exception {
+
+        TagStorageSettings settings = reader.Config.getTagStorageSettings();
+        settings.setTagFields(TAG_FIELD.ALL_TAG_FIELDS);
+        settings.enableAccessReports(true);
+        reader.Config.setTagStorageSettings(settings);
+
+        TagAccess.Sequence sequence = reader.Actions.TagAccess.OperationSequence;
+        sequence.deleteAll();
+        TagAccess.Sequence.Operation operation = sequence.new Operation();
+        operation.setAccessOperationCode(ACCESS_OPERATION_CODE.ACCESS_OPERATION_READ);
+        operation.ReadAccessParams.setMemoryBank(MEMORY_BANK.MEMORY_BANK_TID);
+        operation.ReadAccessParams.setOffset(0);
+
+        // a count of 0 reads to the end of the bank
+        operation.ReadAccessParams.setCount(0);
+        sequence.add(operation);
+        tidArmed = true;
+    }
+
+    @Override
+    public void requestStatus() {
+        try {
+            // answered by battery and temperature status events
+            if (reader != null) reader.Config.getDeviceStatus(true, false, true);
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error in requestStatus(). Error: " + e.getMessage());
+        }
+    }
+
+    // maps the stop condition to the api3 stop trigger. null is the immediate stop trigger, which
+    // leaves the inventory running until the host stops it
+    private void setStopTrigger(Stop stop) throws Exception {
+
+        TriggerInfo triggerInfo = new TriggerInfo();
+        StopTrigger trigger = triggerInfo.StopTrigger;
+
+        if (stop == null) trigger.setTriggerType(STOP_TRIGGER_TYPE.STOP_TRIGGER_TYPE_IMMEDIATE);
+        else switch (stop.type) {
+
+            case duration:
+                trigger.setTriggerType(STOP_TRIGGER_TYPE.STOP_TRIGGER_TYPE_DURATION);
+                trigger.setDurationMilliSeconds(stop.timeout);
+                break;
+
+            case tags:
+                trigger.setTriggerType(STOP_TRIGGER_TYPE.STOP_TRIGGER_TYPE_TAG_OBSERVATION_WITH_TIMEOUT);
+                trigger.TagObservation.setN((short) stop.count);
+                trigger.TagObservation.setTimeout(stop.timeout);
+                break;
+
+            case attempts:
+                trigger.setTriggerType(STOP_TRIGGER_TYPE.STOP_TRIGGER_TYPE_N_ATTEMPTS_WITH_TIMEOUT);
+                trigger.NumAttempts.setN((short) stop.count);
+                trigger.NumAttempts.setTimeout(stop.timeout);
+                break;
+
+            default:
+                trigger.setTriggerType(STOP_TRIGGER_TYPE.STOP_TRIGGER_TYPE_IMMEDIATE);
+                break;
+        }
+        reader.Config.setStopTrigger(trigger);
+    }
+
+    private synchronized void ConfigureReader() {
+        if (isConnected()) {
+
+            try {
+
+                Log.d(Zebra123.getTagName(context), "ConfigureReader()");
+
+                // the access sequence is configured again on the next tid read
+                tidArmed = false;
+
+                // receive events from reader
+                setEvents();
+
+                // set mixed mode as default
+                setMode(mode);
+
+                // set start and stop triggers
+                setTriggers(START_TRIGGER_TYPE.START_TRIGGER_TYPE_IMMEDIATE, STOP_TRIGGER_TYPE.STOP_TRIGGER_TYPE_IMMEDIATE);
+
+                // power levels are index based so maximum power supported get the last one
+                int powerLevel =  reader.ReaderCapabilities.getTransmitPowerLevelValues().length - 1;
+                setPowerLevel(powerLevel);
+
+                reader.Config.setBeeperVolume(BEEPER_VOLUME.HIGH_BEEP);
+
+                // Set the singulation control
+                setAntennaConfig();
+
+                // delete any prefilters
+                reader.Actions.PreFilters.deleteAll();
+
+            } catch (Exception e) {
+                Log.e(Zebra123.getTagName(context), "Error configuring reader. Error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void setRegulatoryConfig() {
+
+        try {
+            if (reader != null) {
+                Log.e(Zebra123.getTagName(context),"Setting region");
+
+                // Get and Set regulatory configuration settings
+                RegulatoryConfig regulatoryConfig = reader.Config.getRegulatoryConfig();
+                RegionInfo regionInfo = reader.ReaderCapabilities.SupportedRegions.getRegionInfo(1);
+                regulatoryConfig.setRegion(regionInfo.getRegionCode());
+                regulatoryConfig.setIsHoppingOn(regionInfo.isHoppingConfigurable());
+                regulatoryConfig.setEnabledChannels(regionInfo.getSupportedChannels());
+                reader.Config.setRegulatoryConfig(regulatoryConfig);
+            }
+        }
+        catch(Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error setting region. Error: " + e.getMessage());
+        }
+    }
+
+    public void setPowerLevel(int level) {
+        try
+        {
+            if (reader != null) {
+                Antennas.AntennaRfConfig config = reader.Config.Antennas.getAntennaRfConfig(1);
+                config.setTransmitPowerIndex(level);
+                config.setrfModeTableIndex(0);
+                config.setTari(0);
+                reader.Config.Antennas.setAntennaRfConfig(1, config);
+            }
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error setting power level. Error: " + e.getMessage());
+        }
+    }
+
+    public void setEvents() {
+        try {
+            if (reader != null) {
+                reader.Events.addEventsListener(this);
+                reader.Events.setHandheldEvent(true);
+                reader.Events.setTagReadEvent(true);
+                reader.Events.setAttachTagDataWithReadEvent(true);
+                reader.Events.setReaderDisconnectEvent(true);
+                reader.Events.setInventoryStopEvent(true);
+                reader.Events.setBatteryEvent(true);
+                reader.Events.setTemperatureAlarmEvent(true);
+
+                // this will make the led's flash when a tag is read and while the trigger is held down
+                reader.Config.setUniqueTagReport(false);
+            }
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error in setEvents(). Error: " + e.getMessage());
+        }
+    }
+
+    private void setMode(ENUM_TRIGGER_MODE mode) {
+        try {
+            if (reader != null) {
+                reader.Config.setTriggerMode(mode, true);
+            }
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context),e.getMessage());
+        }
+    }
+
+    @Override
+    public void setMode(Modes mode) {
+        this.mode = mode;
+        switch (mode) {
+            case barcode:
+                setMode(ENUM_TRIGGER_MODE.BARCODE_MODE);
+                break;
+            case rfid:
+                setMode(ENUM_TRIGGER_MODE.RFID_MODE);
+                break;
+            case mixed:
+                setMode(ENUM_TRIGGER_MODE.BARCODE_MODE);
+                break;
+        }
+    }
+
+    public void setTriggers(START_TRIGGER_TYPE start, STOP_TRIGGER_TYPE stop) {
+        try {
+            if (reader != null) {
+                TriggerInfo triggerInfo = new TriggerInfo();
+                triggerInfo.StartTrigger.setTriggerType(start);
+                triggerInfo.StopTrigger.setTriggerType(stop);
+                reader.Config.setStartTrigger(triggerInfo.StartTrigger);
+                reader.Config.setStopTrigger(triggerInfo.StopTrigger);
+                reader.Config.setBatchMode(BATCH_MODE.ENABLE);
+            }
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context),e.getMessage());
+        }
+    }
+
+    public void setAntennaConfig() {
+        try {
+            if (reader != null) {
+                Antennas.SingulationControl s1_singulationControl = reader.Config.Antennas.getSingulationControl(1);
+                s1_singulationControl.setSession(SESSION.SESSION_S0);
+                s1_singulationControl.Action.setInventoryState(INVENTORY_STATE.INVENTORY_STATE_A);
+                s1_singulationControl.Action.setSLFlag(SL_FLAG.SL_ALL);
+                reader.Config.Antennas.setSingulationControl(1, s1_singulationControl);
+            }
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context),e.getMessage());
+        }
+    }
+
+    @Override
+    public void eventReadNotify(RfidReadEvents event) {
+
+        try {
+            TagData tag = event.getReadEventData().tagData;
+            if(tag.getOpCode() == null || tag.getOpCode()== ACCESS_OPERATION_CODE.ACCESS_OPERATION_READ) {
+
+                TagInfo data = new TagInfo();
+                data.epc = tag.getTagID();
+                data.antenna = tag.getAntennaID();
+                data.rssi = tag.getPeakRSSI();
+                data.status = tag.getOpStatus() != null ? tag.getOpStatus().toString() : null;
+                data.size = tag.getTagIDAllocatedSize();
+                data.lockData = tag.getPermaLockData();
+                if (tag.isContainsLocationInfo()) {
+                    data.distance = tag.LocationInfo.getRelativeDistance();
+                }
+                data.memoryBankData = tag.getMemoryBankData();
+
+                if (listener != null) listener.onRead(data);
+            }
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error reading tag data. Error is " + e.toString());
+        }
+    }
+
+    @Override
+    public void eventStatusNotify(RfidStatusEvents event) {
+
+        Log.d(Zebra123.getTagName(context), "eventStatusNotify()");
+
+        STATUS_EVENT_TYPE eventType = event.StatusEventData.getStatusEventType();
+
+        if (eventType == STATUS_EVENT_TYPE.HANDHELD_TRIGGER_EVENT) {
+
+            // get the trigger event
+            HANDHELD_TRIGGER_EVENT_TYPE triggerEvent = event.StatusEventData.HandheldTriggerEventData.getHandheldEvent();
+
+            // trigger down?
+            if (triggerEvent == HANDHELD_TRIGGER_EVENT_TYPE.HANDHELD_TRIGGER_PRESSED)
+            {
+                Log.d(Zebra123.getTagName(context), "TRIGGER DOWN");
+                if (listener != null) listener.onTrigger(true);
+            }
+
+            // trigger up?
+            else if (triggerEvent == HANDHELD_TRIGGER_EVENT_TYPE.HANDHELD_TRIGGER_RELEASED) {
+
+                Log.d(Zebra123.getTagName(context), "TRIGGER UP");
+                if (listener != null) listener.onTrigger(false);
+            }
+        }
+
+        else if (eventType == STATUS_EVENT_TYPE.INVENTORY_STOP_EVENT) {
+
+            // stops from the host are already accounted for. any other stop ended a bounded inventory
+            boolean ended = false;
+            synchronized (this) {
+                if (stops > 0) stops--;
+                else if (running && bounded != null) {
+                    running = false;
+                    ended = true;
+                }
+            }
+
+            if (ended) {
+                Log.d(Zebra123.getTagName(context), "INVENTORY COMPLETE");
+                if (listener != null) listener.onInventoryStop();
+            }
+        }
+
+        else if (eventType == STATUS_EVENT_TYPE.BATTERY_EVENT) {
+            if (listener != null) listener.onBattery(event.StatusEventData.BatteryData.getLevel(), event.StatusEventData.BatteryData.getCharging());
+        }
+
+        else if (eventType == STATUS_EVENT_TYPE.TEMPERATURE_ALARM_EVENT) {
+            if (listener != null) listener.onTemperature(event.StatusEventData.TemperatureAlarmData.getCurrentTemperature());
+        }
+
+        else if (eventType == STATUS_EVENT_TYPE.DISCONNECTION_EVENT) {
+
+            Log.d(Zebra123.getTagName(context), "READER DISCONNECTED");
+            synchronized (this) {
+                running = false;
+                stops = 0;
+                tidArmed = false;
+            }
+            if (listener != null) listener.onDisconnect();
+        }
+    }
+
+    // configuration
+    private void setAntennaPower(int power) {
+        Log.d(Zebra123.getTagName(context), "setAntennaPower " + power);
+        try {
+            // set antenna configurations
+            Antennas.AntennaRfConfig config = reader.Config.Antennas.getAntennaRfConfig(1);
+            config.setTransmitPowerIndex(power);
+            config.setrfModeTableIndex(0);
+            config.setTari(0);
+            reader.Config.Antennas.setAntennaRfConfig(1, config);
+        } catch (InvalidUsageException e) {
+            e.printStackTrace();
+        } catch (OperationFailureException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void setSingulation(SESSION session, INVENTORY_STATE state) {
+        Log.d(Zebra123.getTagName(context), "setSingulation " + session);
+        try {
+            // Set the singulation control
+            Antennas.SingulationControl s1_singulationControl = reader.Config.Antennas.getSingulationControl(1);
+            s1_singulationControl.setSession(session);
+            s1_singulationControl.Action.setInventoryState(state);
+            s1_singulationControl.Action.setSLFlag(SL_FLAG.SL_ALL);
+            reader.Config.Antennas.setSingulationControl(1, s1_singulationControl);
+        } catch (InvalidUsageException e) {
+            e.printStackTrace();
+        } catch (OperationFailureException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void setDPO(boolean bEnable) {
+        Log.d(Zebra123.getTagName(context), "setDPO " + bEnable);
+        try {
+            // control the DPO
+            reader.Config.setDPOState(bEnable ? DYNAMIC_POWER_OPTIMIZATION.ENABLE : DYNAMIC_POWER_OPTIMIZATION.DISABLE);
+        } catch (InvalidUsageException e) {
+            e.printStackTrace();
+        } catch (OperationFailureException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void prepareAccess() {
+        // set required power and profile
+        setAntennaPower(240);
+        // in case of RFD8500 disable DPO
+        if (reader.getHostName().contains("RFD8500"))
+            setDPO(false);
+        //
+        try {
+            // set access operation time out value to 1 second, so reader will tries for a second
+            // to perform operation before timing out
+            reader.Config.setAccessOperationWaitTimeout(1000);
+        } catch (InvalidUsageException e) {
+            e.printStackTrace();
+        } catch (OperationFailureException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void write(String epc, String password, Banks bank, String data, int offset) throws Exception {
+
+        MEMORY_BANK memory_bank;
+        switch (bank) {
+            case epc:
+                memory_bank = MEMORY_BANK.MEMORY_BANK_EPC;
+                break;
+            case reserved:
+                memory_bank = MEMORY_BANK.MEMORY_BANK_RESERVED;
+                break;
+            default:
+                memory_bank = MEMORY_BANK.MEMORY_BANK_USER;
+                break;
+        }
+
+        TagData tagData = null;
+        String tagId = epc;
+        TagAccess tagAccess = new TagAccess();
+        TagAccess.WriteAccessParams writeAccessParams = tagAccess.new WriteAccessParams();
+        String writeData = data; //write data in string
+        writeAccessParams.setAccessPassword(Long.parseLong(password,16));
+        writeAccessParams.setMemoryBank(memory_bank);
+        writeAccessParams.setOffset(offset); // start writing from word offset 0
+        writeAccessParams.setWriteData(writeData);
+        // set retries in case of partial write happens
+        writeAccessParams.setWriteRetries(3);
+        // data length in words
+        writeAccessParams.setWriteDataLength(writeData.length() / 4);
+        // 5th parameter bPrefilter flag is true which means API will apply pre filter internally
+        // 6th parameter should be true in case of changing EPC ID it self i.e. source and target both is EPC
+        boolean useTIDfilter = memory_bank == MEMORY_BANK.MEMORY_BANK_EPC;
+        reader.Actions.TagAccess.writeWait(tagId, writeAccessParams, null, tagData, true, useTIDfilter);
+    }
+}
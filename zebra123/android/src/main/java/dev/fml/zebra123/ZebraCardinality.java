@@ -0,0 +1,178 @@
+package dev.fml.zebra123;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// estimates the number of unique tags read using hyperloglog sketches instead of storing epc's.
+// a sketch is 4kb regardless of the number of tags, with a standard error of about 1.6%
+public class ZebraCardinality {
+
+    // number of time buckets kept
+    private static final int BUCKETS = 48;
+
+    // sketch over all reads
+    private final Sketch total = new Sketch();
+
+    // sketches per antenna. null when not counting per antenna
+    private final HashMap<Short, Sketch> antennas;
+
+    // sketches per time bucket keyed on the bucket start time. null when not counting per bucket
+    private final LinkedHashMap<Long, Sketch> buckets;
+
+    // time bucket size in ms
+    private final long bucket;
+
+    ZebraCardinality(boolean perAntenna, long bucket) {
+        this.antennas = perAntenna ? new HashMap<Short, Sketch>() : null;
+        this.bucket = bucket;
+        this.buckets = bucket > 0 ? new LinkedHashMap<Long, Sketch>() : null;
+    }
+
+    public synchronized void add(String epc, short antenna, long now) {
+
+        if (epc == null) return;
+
+        long hash = hash(epc);
+        total.add(hash);
+
+        if (antennas != null) {
+            Sketch sketch = antennas.get(antenna);
+            if (sketch == null) {
+                sketch = new Sketch();
+                antennas.put(antenna, sketch);
+            }
+            sketch.add(hash);
+        }
+
+        if (buckets != null) {
+            long start = now - (now % bucket);
+            Sketch sketch = buckets.get(start);
+            if (sketch == null) {
+                sketch = new Sketch();
+                buckets.put(start, sketch);
+
+                // drop the oldest buckets
+                Iterator<Long> iterator = buckets.keySet().iterator();
+                while (buckets.size() > BUCKETS && iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+            sketch.add(hash);
+        }
+    }
+
+    // merges the registers of a sketch taken on another trigger pull or reader into the total
+    public synchronized boolean merge(byte[] registers) {
+        return total.merge(registers);
+    }
+
+    // returns the estimates. registers are included so the sketches can be merged elsewhere
+    public synchronized HashMap<String, Object> toMap(boolean registers) {
+
+        HashMap<String, Object> map = total.toMap(registers);
+
+        if (antennas != null) {
+            HashMap<String, Object> list = new HashMap<>();
+            for (Short antenna : antennas.keySet())
+                list.put(antenna.toString(), antennas.get(antenna).toMap(registers));
+            map.put("antennas", list);
+        }
+
+        if (buckets != null) {
+            ArrayList<HashMap<String, Object>> list = new ArrayList<>();
+            for (Long start : buckets.keySet()) {
+                HashMap<String, Object> item = buckets.get(start).toMap(registers);
+                item.put("start", start);
+                item.put("end", start + bucket);
+                list.add(item);
+            }
+            map.put("buckets", list);
+        }
+
+        return map;
+    }
+
+    // 64 bit fnv-1a hash of the epc, finalized with the murmur3 mixer for an even bit spread
+    static long hash(String epc) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < epc.length(); i++) {
+            h ^= Character.toUpperCase(epc.charAt(i));
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static class Sketch {
+
+        // 2^P registers
+        static final int P = 12;
+        static final int M = 1 << P;
+
+        final byte[] registers = new byte[M];
+
+        void add(long hash) {
+
+            // the first P bits select the register, the rest give the run of leading zeros
+            int index = (int) (hash >>> (64 - P));
+            long rest = (hash << P) | (1L << (P - 1));
+            byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+            if (rank > registers[index]) registers[index] = rank;
+        }
+
+        boolean merge(byte[] other) {
+            if (other == null || other.length != M) return false;
+            for (int i = 0; i < M; i++) {
+                if (other[i] > registers[i]) registers[i] = other[i];
+            }
+            return true;
+        }
+
+        double estimate() {
+
+            double sum = 0;
+            int zeros = 0;
+            for (int i = 0; i < M; i++) {
+                sum += 1.0 / (1L << registers[i]);
+                if (registers[i] == 0) zeros++;
+            }
+
+            double alpha = 0.7213 / (1 + 1.079 / M);
+            double estimate = alpha * M * M / sum;
+
+            // small range correction
+            if (estimate <= 2.5 * M && zeros > 0) estimate = M * Math.log((double) M / zeros);
+
+            return estimate;
+        }
+
+        // relative standard error
+        static double error() {
+            return 1.04 / Math.sqrt(M);
+        }
+
+        HashMap<String, Object> toMap(boolean includeRegisters) {
+
+            double estimate = estimate();
+            double error = error();
+
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("estimate", Math.round(estimate));
+            map.put("error", error);
+
+            // 95% confidence interval
+            map.put("low", Math.max(0, Math.round(estimate * (1 - 2 * error))));
+            map.put("high", Math.round(estimate * (1 + 2 * error)));
+
+            if (includeRegisters) map.put("registers", registers.clone());
+            return map;
+        }
+    }
+}
@@ -24,14 +24,17 @@ public class ZebraDataWedge extends BroadcastReceiver implements ZebraDevice {
     private static final Interfaces INTERFACE = Interfaces.datawedge;
 
     private Context context;
-    private EventSink sink = null;
+    private final ZebraEventQueue events;
 
     public static String barcodeLast = "";
     public static long seenLast = 0;
 
-     public ZebraDataWedge(Context context, EventSink sink) {
+    // records the barcode intents. null when not recording
+    private volatile ZebraRecorder recorder = null;
+
+     public ZebraDataWedge(Context context, ZebraEventQueue events) {
         this.context = context;
-        this.sink = sink;
+        this.events = events;
         this.createProfile();
     }
 
@@ -62,6 +65,12 @@ public class ZebraDataWedge extends BroadcastReceiver implements ZebraDevice {
                 long   seen    = System.currentTimeMillis();
                 String date    = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss.SSS").format(new Date(seen)).toString();
 
+                ZebraMetrics.shared.barcodes.mark();
+
+                // record the raw intent
+                ZebraRecorder recorder = this.recorder;
+                if (recorder != null) recorder.barcode(barcode, format);
+
                 // create a map of simple objects
                 HashMap<String, Object> tag = new HashMap<>();
                 tag.put("barcode", barcode);
@@ -147,6 +156,9 @@ public class ZebraDataWedge extends BroadcastReceiver implements ZebraDevice {
     @Override
     public void disconnect() {
 
+        // close the recording
+        record(Requests.stop, null);
+
         try {
             context.unregisterReceiver(this);
 
@@ -174,8 +186,8 @@ public class ZebraDataWedge extends BroadcastReceiver implements ZebraDevice {
     }
 
     @Override
-    public void scan(Requests request) {
-        // set the scanner to start or stop scanning
+    public void scan(Requests request, ZebraReader.Stop stop) {
+        // set the scanner to start or stop scanning. datawedge scans have no stop condition
         send(context, "com.symbol.datawedge.api.SOFT_SCAN_TRIGGER", request == Requests.start ? "START_SCANNING" : "STOP_SCANNING");
         return;
     }
@@ -201,6 +213,133 @@ public class ZebraDataWedge extends BroadcastReceiver implements ZebraDevice {
         return;
     }
 
+    @Override
+    public void aggregate(Requests request, int interval) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling aggregate()", exception));
+        return;
+    }
+
+    @Override
+    public void manifest(Requests request, ArrayList<String> tags, boolean autoStop, int interval) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling manifest()", exception));
+        return;
+    }
+
+    @Override
+    public void statistics(ArrayList<Statistics> fields) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling statistics()", exception));
+        return;
+    }
+
+    @Override
+    public void nearest(Requests request, int size, int interval) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling nearest()", exception));
+        return;
+    }
+
+    @Override
+    public void estimate(Requests request, boolean perAntenna, int bucket) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling estimate()", exception));
+        return;
+    }
+
+    @Override
+    public HashMap<String, Object> sketch(byte[] merge) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling sketch()", exception));
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> budget(long bytes) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling budget()", exception));
+        return null;
+    }
+
+    @Override
+    public synchronized HashMap<String, Object> record(Requests request, String file) {
+
+        // stop the current recording
+        HashMap<String, Object> map = null;
+        if (recorder != null) {
+            recorder.close();
+            map = recorder.toMap();
+            recorder = null;
+        }
+
+        if (request == Requests.start) {
+            try {
+                recorder = new ZebraRecorder(Zebra123.getRecordingFile(context, file));
+                map = recorder.toMap();
+            }
+            catch (Exception e) {
+                Log.e(Zebra123.getTagName(context), "Error starting recording. Error: " + e.getMessage());
+                sendEvent(Events.error, ZebraDevice.toError("Error calling record()", e));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public HashMap<String, Object> transport(Requests request, int capacity) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling transport()", exception));
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> filter(Requests request, ZebraFilter filter) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling filter()", exception));
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> session(Requests request, String name, ArrayList<String> tags, Notifies notify) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling session()", exception));
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> trigger(int debounce, int minimum) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling trigger()", exception));
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> cycle(Requests request, int period, int duty, int minimum, int warm, int hot, int battery) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling cycle()", exception));
+        return null;
+    }
+
+    @Override
+    public void delta(boolean enabled) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling delta()", exception));
+    }
+
+    @Override
+    public void resync(Target target) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling resync()", exception));
+    }
+
+    @Override
+    public HashMap<String, Object> query(Queries query, int offset, int limit, Sorts sort, String prefix) {
+        Exception exception = new Exception("Not implemented");
+        sendEvent(Events.error, ZebraDevice.toError("Error calling query()", exception));
+        return null;
+    }
+
     public void setMode(String mode) {
         Exception exception = new Exception("Not implemented");
         sendEvent(Events.error, ZebraDevice.toError("Error calling setMode()", exception));
@@ -294,20 +433,7 @@ public class ZebraDataWedge extends BroadcastReceiver implements ZebraDevice {
 
     private void sendEvent(final ZebraDevice.Events event, final HashMap map) {
 
-        if (sink == null) {
-            Log.e(Zebra123.getTagName(context), "Can't send notification to flutter. Sink is null");
-            return;
-        }
-
-        try
-        {
-            map.put("eventSource", INTERFACE.toString());
-            map.put("eventName", event.toString());
-            sink.success(map);
-        }
-        catch (Exception e)
-        {
-            Log.e(Zebra123.getTagName(context), "Error sending notification to flutter. Error: " + e.getMessage());
-        }
+        // delivered on the main thread on the event's channel
+        events.send(INTERFACE, event, map);
     }
 }
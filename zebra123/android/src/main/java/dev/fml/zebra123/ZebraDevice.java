@@ -8,10 +8,30 @@ public interface ZebraDevice {
     void connect();
     void disconnect();
     void dispose();
-    void scan(Requests request);
+    void scan(Requests request, ZebraReader.Stop stop);
     void track(Requests request, ArrayList<String> tags);
     void write(String epc, String newEpc, String password, String newPassword, String data);
     void setMode(Modes mode);
+    void aggregate(Requests request, int interval);
+    void manifest(Requests request, ArrayList<String> tags, boolean autoStop, int interval);
+    void statistics(ArrayList<Statistics> fields);
+    void nearest(Requests request, int size, int interval);
+    void estimate(Requests request, boolean perAntenna, int bucket);
+    HashMap<String, Object> sketch(byte[] merge);
+    HashMap<String, Object> budget(long bytes);
+    HashMap<String, Object> record(Requests request, String file);
+    HashMap<String, Object> transport(Requests request, int capacity);
+    void delta(boolean enabled);
+    void resync(Target target);
+    HashMap<String, Object> filter(Requests request, ZebraFilter filter);
+    HashMap<String, Object> session(Requests request, String name, ArrayList<String> tags, Notifies notify);
+    HashMap<String, Object> trigger(int debounce, int minimum);
+    HashMap<String, Object> cycle(Requests request, int period, int duty, int minimum, int warm, int hot, int battery);
+    HashMap<String, Object> query(Queries query, int offset, int limit, Sorts sort, String prefix);
+
+    // a flutter engine that events can be sent to alone
+    interface Target {
+    }
 
     enum Interfaces {
         rfidapi3,
@@ -24,6 +44,31 @@ public interface ZebraDevice {
         scan,
         write,
         mode,
+        aggregate,
+        manifest,
+        statistics,
+        query,
+        nearest,
+        estimate,
+        sketch,
+        budget,
+        record,
+        replay,
+        stats,
+        metrics,
+        trace,
+        delivery,
+        flow,
+        credit,
+        transport,
+        delta,
+        resync,
+        background,
+        subscribe,
+        filter,
+        session,
+        trigger,
+        cycle,
         unknown
     }
 
@@ -39,6 +84,51 @@ public interface ZebraDevice {
         mixed
     }
 
+    enum Statistics {
+        reads,
+        firstSeen,
+        lastSeen,
+        rssiMin,
+        rssiMax,
+        rssiMean,
+        antennas,
+        rate,
+        unknown
+    }
+
+    enum Stops {
+        duration,
+        tags,
+        attempts,
+        unknown
+    }
+
+    enum Queries {
+        count,
+        page,
+        prefix,
+        top,
+        clear,
+        unknown
+    }
+
+    enum Sorts {
+        lastSeen,
+        rssi
+    }
+
+    enum Notifies {
+        first,
+        change,
+        every
+    }
+
+    enum Overflows {
+        merge,
+        dropOldest,
+        spill
+    }
+
     enum Events {
         readRfid,
         readBarcode,
@@ -49,6 +139,14 @@ public interface ZebraDevice {
         stopRead,
         writeFail,
         writeSuccess,
+        readGtin,
+        manifestProgress,
+        nearestTags,
+        estimate,
+        metrics,
+        batch,
+        rfidSnapshot,
+        trackedTags,
         unknown
     }
 
@@ -0,0 +1,161 @@
+package dev.fml.zebra123;
+
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// continuous inventory as alternating on and off windows. a sled reading flat out heats until it
+// throttles, so the reader only reads for the duty share of each period. the duty backs off
+// towards the minimum as the sled warms up and when the battery runs low, and recovers as it cools
+// or is charged. the reader status is requested at the start of each off window, while the reader
+// is idle, and the new duty applies from the next window
+public class ZebraDutyCycle {
+
+    interface Actions {
+
+        // start and stop the inventory of a window
+        void on();
+        void off();
+
+        // request the battery and temperature of the reader
+        void status();
+    }
+
+    private final Actions actions;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    // ms of each on and off window pair
+    private final int period;
+
+    // % of the period spent reading when the sled is cool and charged, and the least % it backs off to
+    private final int duty;
+    private final int minimum;
+
+    // degrees celsius the duty starts to back off at, and is at the minimum at
+    private final int warm;
+    private final int hot;
+
+    // battery % below which the duty is at the minimum unless charging
+    private final int low;
+
+    // the latest reader status. unknown until the reader answers
+    private int temperature = Integer.MIN_VALUE;
+    private int battery = -1;
+    private boolean charging = false;
+
+    // % of the current period spent reading
+    private int current;
+
+    // windows run, and ms spent reading and idle
+    private long windows = 0;
+    private long reading = 0;
+    private long idle = 0;
+
+    private boolean running = false;
+
+    ZebraDutyCycle(int period, int duty, int minimum, int warm, int hot, int low, Actions actions) {
+        this.period = Math.max(100, period);
+        this.duty = Math.max(1, Math.min(100, duty));
+        this.minimum = Math.max(1, Math.min(this.duty, minimum));
+        this.warm = warm;
+        this.hot = Math.max(warm + 1, hot);
+        this.low = low;
+        this.current = this.duty;
+        this.actions = actions;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        executor.execute(this::on);
+    }
+
+    public void dispose() {
+        synchronized (this) {
+            running = false;
+        }
+        executor.shutdownNow();
+    }
+
+    public synchronized void temperature(int temperature) {
+        this.temperature = temperature;
+        current = adapt();
+    }
+
+    public synchronized void battery(int level, boolean charging) {
+        this.battery = level;
+        this.charging = charging;
+        current = adapt();
+    }
+
+    private void on() {
+
+        int time;
+        synchronized (this) {
+            if (!running) return;
+            windows++;
+            time = period * current / 100;
+            reading += time;
+        }
+
+        actions.on();
+        schedule(this::off, time);
+    }
+
+    private void off() {
+
+        int time;
+        synchronized (this) {
+            if (!running) return;
+            time = period - period * current / 100;
+            idle += time;
+        }
+
+        // a full duty still stops briefly, so the status can be read while the reader is idle
+        actions.off();
+        actions.status();
+        schedule(this::on, time);
+    }
+
+    private void schedule(Runnable window, int time) {
+        try {
+            executor.schedule(window, time, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            // disposed during the window
+        }
+    }
+
+    // the duty for the latest status. the lower of the thermal and battery duty applies
+    private int adapt() {
+
+        int thermal = duty;
+        if (temperature != Integer.MIN_VALUE) {
+            if (temperature >= hot) thermal = minimum;
+            else if (temperature > warm) thermal = duty - (duty - minimum) * (temperature - warm) / (hot - warm);
+        }
+
+        int power = duty;
+        if (battery >= 0 && !charging && battery <= low) power = minimum;
+
+        return Math.min(thermal, power);
+    }
+
+    public synchronized HashMap<String, Object> toMap() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("running", running);
+        map.put("period", period);
+        map.put("duty", duty);
+        map.put("minimum", minimum);
+        map.put("current", current);
+        if (temperature != Integer.MIN_VALUE) map.put("temperature", temperature);
+        if (battery >= 0) map.put("battery", battery);
+        map.put("charging", charging);
+        map.put("windows", windows);
+        map.put("reading", reading);
+        map.put("idle", idle);
+        return map;
+    }
+}
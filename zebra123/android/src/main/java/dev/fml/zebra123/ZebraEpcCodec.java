@@ -0,0 +1,162 @@
+package dev.fml.zebra123;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+// compact encoding of epc lists. each epc is written as the number of leading digits it shares
+// with the previous one followed by the remaining digits packed two to a byte. sorted, the long
+// headers and company prefixes epc's share cost a byte or two, so a 24 digit epc takes 3 to 5
+// bytes. epc's that aren't upper case hex are written as text
+public class ZebraEpcCodec {
+
+    static final int VERSION = 1;
+
+    // tag reports with fewer tags are sent as they are
+    static final int MIN_PACKED = 16;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final Comparator<HashMap<String, Object>> BY_EPC = new Comparator<HashMap<String, Object>>() {
+        @Override
+        public int compare(HashMap<String, Object> a, HashMap<String, Object> b) {
+            return epc(a).compareTo(epc(b));
+        }
+    };
+
+    private static String epc(HashMap<String, Object> tag) {
+        Object epc = tag.get("epc");
+        return epc != null ? epc.toString() : "";
+    }
+
+    // sorts the tags of a large report by epc and replaces their epc's with the encoding
+    @SuppressWarnings("unchecked")
+    static void pack(HashMap map) {
+
+        if (!(map.get("tags") instanceof ArrayList)) return;
+        ArrayList<HashMap<String, Object>> tags = (ArrayList<HashMap<String, Object>>) map.get("tags");
+        if (tags.size() < MIN_PACKED) return;
+
+        Collections.sort(tags, BY_EPC);
+
+        ArrayList<String> epcs = new ArrayList<>(tags.size());
+        for (HashMap<String, Object> tag : tags) {
+            epcs.add(epc(tag));
+            tag.remove("epc");
+        }
+        map.put("epcs", encode(epcs));
+    }
+
+    // encodes the epc's in the order given. sort them first for the best compression
+    public static byte[] encode(ArrayList<String> epcs) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(epcs.size() * 6 + 8);
+        out.write(VERSION);
+        writeVarint(out, epcs.size());
+
+        String previous = "";
+        for (String epc : epcs) {
+
+            if (epc == null) epc = "";
+
+            if (!isHex(epc)) {
+                byte[] text = epc.getBytes(UTF8);
+                writeVarint(out, 0);
+                writeVarint(out, ((long) text.length << 1) | 1);
+                out.write(text, 0, text.length);
+                previous = "";
+                continue;
+            }
+
+            // digits shared with the previous epc
+            int shared = 0;
+            int max = Math.min(epc.length(), previous.length());
+            while (shared < max && epc.charAt(shared) == previous.charAt(shared)) shared++;
+
+            int length = epc.length() - shared;
+            writeVarint(out, shared);
+            writeVarint(out, (long) length << 1);
+            for (int i = 0; i < length; i += 2) {
+                int high = Character.digit(epc.charAt(shared + i), 16);
+                int low = i + 1 < length ? Character.digit(epc.charAt(shared + i + 1), 16) : 0;
+                out.write((high << 4) | low);
+            }
+            previous = epc;
+        }
+        return out.toByteArray();
+    }
+
+    // decodes the epc's. returns an empty list if the encoding is invalid
+    public static ArrayList<String> decode(byte[] bytes) {
+
+        ArrayList<String> epcs = new ArrayList<>();
+        if (bytes == null || bytes.length == 0 || bytes[0] > VERSION) return epcs;
+
+        try {
+            int[] at = {1};
+            long count = readVarint(bytes, at);
+
+            String previous = "";
+            for (long n = 0; n < count; n++) {
+
+                int shared = (int) readVarint(bytes, at);
+                long header = readVarint(bytes, at);
+                int length = (int) (header >> 1);
+
+                if ((header & 1) != 0) {
+                    previous = "";
+                    epcs.add(new String(bytes, at[0], length, UTF8));
+                    at[0] += length;
+                    continue;
+                }
+
+                char[] epc = new char[shared + length];
+                previous.getChars(0, shared, epc, 0);
+                for (int i = 0; i < length; i++) {
+                    int b = bytes[at[0] + i / 2] & 0xFF;
+                    epc[shared + i] = DIGITS[i % 2 == 0 ? b >> 4 : b & 0x0F];
+                }
+                at[0] += (length + 1) / 2;
+
+                previous = new String(epc);
+                epcs.add(previous);
+            }
+        }
+        catch (Exception e) {
+            epcs.clear();
+        }
+        return epcs;
+    }
+
+    // upper case hex only, so a decoded epc is always the epc encoded
+    private static boolean isHex(String epc) {
+        for (int i = 0; i < epc.length(); i++) {
+            char c = epc.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'A' && c <= 'F')) return false;
+        }
+        return epc.length() > 0;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] bytes, int[] at) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = bytes[at[0]++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+        }
+    }
+}
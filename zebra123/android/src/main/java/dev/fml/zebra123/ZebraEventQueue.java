@@ -0,0 +1,640 @@
+package dev.fml.zebra123;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+import io.flutter.plugin.common.EventChannel.StreamHandler;
+import io.flutter.plugin.common.EventChannel.EventSink;
+
+import dev.fml.zebra123.ZebraDevice.Events;
+
+// queues the events sent to flutter on separate channels, so a large tag report never holds up a
+// barcode or status event. control and barcode events are delivered right away. bulk channels are
+// coalesced into a single delivery per frame, or per interval ms, a pending report superseded by a
+// newer one being merged into it. channels are drained in priority order and several events of a
+// channel go out as one batch event. every flutter engine attached to the queue gets the events it
+// subscribes to, so one device serves them all
+public class ZebraEventQueue implements Choreographer.FrameCallback, Runnable {
+
+    // ms between deliveries of the bulk channels. 0 delivers once per frame
+    private static volatile int interval = 0;
+
+    enum Channels {
+
+        // connection, support, inventory and write status and errors
+        control("dev.fml.zebra123/event", true),
+
+        // barcode reads
+        barcode("dev.fml.zebra123/event/barcode", true),
+
+        // tag reports, counts, nearest tags, estimates and manifest progress
+        rfid("dev.fml.zebra123/event/rfid", false),
+
+        // periodic metrics
+        metrics("dev.fml.zebra123/event/metrics", false);
+
+        final String name;
+
+        // urgent channels are delivered right away rather than with the next frame
+        final boolean urgent;
+
+        Channels(String name, boolean urgent) {
+            this.name = name;
+            this.urgent = urgent;
+        }
+    }
+
+    private final Context context;
+    private final Handler handler;
+
+    private final ZebraMetrics metrics = ZebraMetrics.shared;
+    private final ZebraTrace trace = ZebraTrace.shared;
+
+    private final Channel[] channels = new Channel[Channels.values().length];
+
+    // the engines listening to the queue
+    private final ArrayList<Engine> engines = new ArrayList<>();
+
+    // true when a delivery of the bulk channels is scheduled
+    private boolean scheduled = false;
+
+    // true when a delivery of the urgent channels is scheduled
+    private boolean urgent = false;
+
+    // uptime ms of the last delivery of the bulk channels
+    private long delivered = 0;
+
+    // the main thread choreographer. null until first used
+    private volatile Choreographer choreographer = null;
+
+    private final Runnable deliverUrgent = () -> deliver(true);
+
+    // credit based flow control of tag reports. off until flutter starts it, when every tag report
+    // takes a credit and reports without one are held back in the tag store
+    private boolean flow = false;
+    private long credits = 0;
+
+    // what happens to the tags held back while there is no credit, and how many are held
+    private ZebraDevice.Overflows overflow = ZebraDevice.Overflows.merge;
+    private int limit = 0;
+
+    // tags held back before dropping or spilling applies, when flutter gives no limit
+    static final int LIMIT = 10000;
+
+    // the engine that started flow control. only its credits count, as every engine gets the reports
+    private Engine owner = null;
+
+    // reports the held back tags once credit is granted
+    private volatile Runnable onCredit = null;
+
+    ZebraEventQueue(Context context) {
+        this.context = context;
+        this.handler = new Handler(Looper.getMainLooper());
+        for (Channels channel : Channels.values()) channels[channel.ordinal()] = new Channel();
+    }
+
+    // sets the ms between deliveries of the bulk channels of every queue. 0 delivers once per frame
+    public static void setInterval(int ms) {
+        interval = Math.max(0, ms);
+    }
+
+    public static int getInterval() {
+        return interval;
+    }
+
+    // starts or stops flow control of tag reports. starting it sets the credits outstanding
+    public void flow(Engine engine, boolean on, long credits, ZebraDevice.Overflows overflow, int limit) {
+        synchronized (this) {
+            if (!on && owner != null && owner != engine) return;
+            this.owner = on ? engine : null;
+            this.flow = on;
+            this.credits = Math.max(0, credits);
+            this.overflow = overflow;
+            // dropping and spilling need a bound, or the held back tags pile up in memory
+            this.limit = limit > 0 ? limit : overflow == ZebraDevice.Overflows.merge ? 0 : LIMIT;
+        }
+        notifyCredit();
+    }
+
+    // grants credit for more tag reports
+    public void credit(Engine engine, long credits) {
+        synchronized (this) {
+            if (owner != null && owner != engine) return;
+            this.credits += Math.max(0, credits);
+        }
+        notifyCredit();
+    }
+
+    // takes a credit for a tag report. always succeeds when flow control is off and flutter listens
+    public synchronized boolean acquire() {
+
+        // held back while no engine listens for them, as when reading in the background
+        if (!isListening(Channels.rfid, null)) return false;
+
+        if (!flow) return true;
+        if (credits <= 0) {
+            metrics.stalled.mark();
+            return false;
+        }
+        credits--;
+        return true;
+    }
+
+    // returns a credit taken for a tag report that was never delivered
+    public synchronized void release() {
+        if (flow) credits++;
+    }
+
+    public synchronized ZebraDevice.Overflows getOverflow() {
+        return overflow;
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized HashMap<String, Object> getFlow() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("enabled", flow);
+        map.put("credits", credits);
+        map.put("overflow", overflow.toString());
+        map.put("limit", limit);
+        return map;
+    }
+
+    public void setCreditListener(Runnable listener) {
+        onCredit = listener;
+    }
+
+    private void notifyCredit() {
+        boolean granted;
+        synchronized (this) {
+            granted = !flow || credits > 0;
+        }
+        Runnable listener = onCredit;
+        if (granted && listener != null) listener.run();
+    }
+
+    // returns the channel an event is sent on
+    static Channels channel(Events event) {
+        switch (event) {
+            case readBarcode:
+                return Channels.barcode;
+            case readRfid:
+            case rfidSnapshot:
+            case trackedTags:
+            case readGtin:
+            case nearestTags:
+            case estimate:
+            case manifestProgress:
+                return Channels.rfid;
+            case metrics:
+                return Channels.metrics;
+            default:
+                return Channels.control;
+        }
+    }
+
+    public synchronized void attach(Engine engine) {
+        if (!engines.contains(engine)) engines.add(engine);
+    }
+
+    // detaches the engine, dropping its sinks. flow control it started is stopped
+    public void detach(Engine engine) {
+        for (Channels channel : Channels.values()) setSink(engine, channel, null);
+        synchronized (this) {
+            engines.remove(engine);
+            if (owner == engine) {
+                owner = null;
+                flow = false;
+            }
+        }
+        notifyCredit();
+    }
+
+    public synchronized void setSink(Engine engine, Channels channel, EventSink sink) {
+        Channel queue = channels[channel.ordinal()];
+        engine.sinks[channel.ordinal()] = sink;
+
+        // events queued while no engine listens are dropped
+        if (!isListening(channel, null)) {
+            for (Event event : queue.pending) {
+                metrics.delivered(event.posted);
+                if (event.event == Events.readRfid) release();
+            }
+            metrics.dropped.mark(queue.pending.size());
+            queue.pending.clear();
+        }
+    }
+
+    public synchronized boolean hasSink(Channels channel) {
+        return isListening(channel, null);
+    }
+
+    // true if the engine, or any engine when null, listens on the channel
+    private boolean isListening(Channels channel, ZebraDevice.Target target) {
+        for (Engine engine : engines) {
+            if ((target == null || target == engine) && engine.sinks[channel.ordinal()] != null) return true;
+        }
+        return false;
+    }
+
+    // returns the stream handler of an engine's channel
+    public StreamHandler handler(final Engine engine, final Channels channel) {
+        return new StreamHandler() {
+
+            @Override
+            public void onListen(Object arguments, EventSink sink) {
+                setSink(engine, channel, sink);
+            }
+
+            @Override
+            public void onCancel(Object arguments) {
+                setSink(engine, channel, null);
+            }
+        };
+    }
+
+    // queues the event for delivery to every engine on its channel. safe to call from any thread
+    public void send(ZebraDevice.Interfaces source, Events event, HashMap map) {
+        send(null, source, event, map);
+    }
+
+    // queues the event for delivery to one engine, or every engine when target is null
+    public void send(ZebraDevice.Target target, ZebraDevice.Interfaces source, Events event, HashMap map) {
+
+        Channels channel = channel(event);
+
+        synchronized (this) {
+
+            Channel queue = channels[channel.ordinal()];
+            if (!isListening(channel, target)) {
+                if (event == Events.readRfid) release();
+                metrics.dropped.mark();
+                Log.e(Zebra123.getTagName(context), "Can't send notification to flutter. Sink is null");
+                return;
+            }
+
+            map.put("eventSource", source.toString());
+            map.put("eventName", event.toString());
+
+            // merge into the pending event it supersedes
+            if (merge(queue, target, event, map)) {
+                metrics.merged.mark();
+                return;
+            }
+
+            queue.pending.add(new Event(target, source, event, map, metrics.posted()));
+            schedule(channel.urgent);
+        }
+    }
+
+    // merges a bulk event into a pending event of the same kind on its channel
+    private boolean merge(Channel queue, ZebraDevice.Target target, Events event, HashMap map) {
+
+        if (!isMergeable(event)) return false;
+
+        for (int i = queue.pending.size() - 1; i >= 0; i--) {
+
+            Event previous = queue.pending.get(i);
+
+            // reports are never merged across a snapshot they follow on from
+            if (previous.event == Events.rfidSnapshot) return false;
+            if (previous.event != event || previous.target != target) continue;
+
+            // tracked tags are merged per session
+            if (event == Events.trackedTags && !String.valueOf(map.get("session")).equals(String.valueOf(previous.map.get("session")))) continue;
+
+            // reports passing records through the shared ring are never merged
+            if (map.containsKey("ring") || previous.map.containsKey("ring")) return false;
+
+            // tag reports are merged per tag, later reads of a tag replacing earlier ones. flutter
+            // returns a credit per report it gets, so the credit of the merged report is returned
+            if (event == Events.readRfid) {
+                previous.mergeTags(map);
+                release();
+            }
+            else if (event == Events.trackedTags) previous.mergeTags(map);
+
+            // manifest progress carries the tags found since the previous report
+            else if (event == Events.manifestProgress) previous.mergeProgress(map);
+
+            // other events are snapshots, the newest replacing the pending one
+            else previous.map = map;
+            return true;
+        }
+        return false;
+    }
+
+    // gtin reports carry deltas, snapshots are complete and control events are never superseded
+    private static boolean isMergeable(Events event) {
+        switch (event) {
+            case readRfid:
+            case trackedTags:
+            case nearestTags:
+            case estimate:
+            case manifestProgress:
+            case metrics:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void schedule(boolean urgent) {
+
+        if (urgent) {
+            if (this.urgent) return;
+            this.urgent = true;
+            handler.post(deliverUrgent);
+            return;
+        }
+
+        if (scheduled) return;
+        scheduled = true;
+
+        int interval = ZebraEventQueue.interval;
+        if (interval > 0) {
+            handler.postDelayed(this, Math.max(0, delivered + interval - SystemClock.uptimeMillis()));
+        }
+        else if (choreographer != null) {
+            choreographer.postFrameCallback(this);
+        }
+
+        // the choreographer is per thread, so it is fetched on the main thread
+        else {
+            handler.post(() -> {
+                choreographer = Choreographer.getInstance();
+                choreographer.postFrameCallback(this);
+            });
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        deliver(false);
+    }
+
+    @Override
+    public void run() {
+        deliver(false);
+    }
+
+    // sends the pending events of each channel in priority order. always on the main thread.
+    // the urgent channels are sent with every delivery
+    private void deliver(boolean urgentOnly) {
+
+        Channels[] order = Channels.values();
+        ArrayList<ArrayList<Event>> drained = new ArrayList<>(order.length);
+        ArrayList<Engine> engines;
+
+        synchronized (this) {
+
+            urgent = false;
+            if (!urgentOnly) {
+                scheduled = false;
+                delivered = SystemClock.uptimeMillis();
+            }
+
+            for (Channels channel : order) {
+                Channel queue = channels[channel.ordinal()];
+                if ((urgentOnly && !channel.urgent) || queue.pending.size() == 0) {
+                    drained.add(null);
+                    continue;
+                }
+                drained.add(new ArrayList<>(queue.pending));
+                queue.pending.clear();
+            }
+            engines = new ArrayList<>(this.engines);
+        }
+
+        for (Channels channel : order) {
+            ArrayList<Event> events = drained.get(channel.ordinal());
+            if (events != null) deliver(channel, events, engines);
+        }
+    }
+
+    private void deliver(Channels channel, ArrayList<Event> events, ArrayList<Engine> engines) {
+
+        long sent = ZebraTrace.now();
+        boolean traced = false;
+
+        for (Event event : events) {
+            metrics.delivered(event.posted);
+
+            // reports carrying trace stamps are timed through to the event channel
+            if (event.stamps() != null) {
+                trace.record(ZebraTrace.Stages.post, event.queued, sent);
+                event.stamps().put("sent", sent);
+                traced = true;
+            }
+        }
+
+        // the events each listening engine subscribes to
+        ArrayList<EventSink> sinks = new ArrayList<>();
+        ArrayList<ArrayList<HashMap>> views = new ArrayList<>();
+        for (Engine engine : engines) {
+
+            EventSink sink = engine.sinks[channel.ordinal()];
+            if (sink == null) continue;
+
+            ArrayList<HashMap> maps = new ArrayList<>(events.size());
+            for (Event event : events) {
+                HashMap map = engine.view(event);
+                if (map != null) maps.add(map);
+            }
+            if (maps.size() == 0) continue;
+
+            sinks.add(sink);
+            views.add(maps);
+        }
+
+        // large tag reports go with their epc's encoded. engines share a report they don't filter,
+        // so each report is only encoded once every engine has its view
+        IdentityHashMap<HashMap, Boolean> packed = new IdentityHashMap<>();
+        for (ArrayList<HashMap> maps : views) {
+            for (HashMap map : maps) {
+                if (packed.put(map, true) == null && isTagReport(map)) ZebraEpcCodec.pack(map);
+            }
+        }
+
+        if (traced) ZebraTrace.begin(ZebraTrace.Stages.codec);
+        try
+        {
+            for (int i = 0; i < sinks.size(); i++) {
+
+                ArrayList<HashMap> maps = views.get(i);
+
+                Object payload = maps.get(0);
+                if (maps.size() > 1) {
+                    HashMap<String, Object> batch = new HashMap<>();
+                    batch.put("eventSource", maps.get(maps.size() - 1).get("eventSource"));
+                    batch.put("eventName", Events.batch.toString());
+                    batch.put("events", maps);
+                    payload = batch;
+                }
+
+                sinks.get(i).success(payload);
+                metrics.events.mark(maps.size());
+            }
+        }
+        catch (Exception e)
+        {
+            Log.e(Zebra123.getTagName(context), "Error sending notification to flutter. Error: " + e.getMessage());
+        }
+        finally {
+            if (traced) {
+                ZebraTrace.end();
+                trace.record(ZebraTrace.Stages.codec, sent, ZebraTrace.now());
+            }
+        }
+    }
+
+    private static boolean isTagReport(HashMap map) {
+        Object name = map.get("eventName");
+        return Events.readRfid.toString().equals(name) || Events.rfidSnapshot.toString().equals(name) || Events.trackedTags.toString().equals(name);
+    }
+
+    // a flutter engine listening to the queue, and the events it subscribes to
+    static class Engine implements ZebraDevice.Target {
+
+        final EventSink[] sinks = new EventSink[Channels.values().length];
+
+        // events the engine gets besides control events. empty subscribes to every event
+        private final HashSet<Events> events = new HashSet<>();
+
+        // epc prefixes of the tags in the tag reports the engine gets. empty gets every tag
+        private final ArrayList<String> prefixes = new ArrayList<>();
+
+        public synchronized void subscribe(Collection<Events> events, Collection<String> prefixes) {
+            this.events.clear();
+            this.prefixes.clear();
+            if (events != null) this.events.addAll(events);
+            if (prefixes != null) this.prefixes.addAll(prefixes);
+        }
+
+        public synchronized HashMap<String, Object> getSubscription() {
+            ArrayList<String> names = new ArrayList<>();
+            for (Events event : events) names.add(event.toString());
+
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("events", names);
+            map.put("prefixes", new ArrayList<>(prefixes));
+            return map;
+        }
+
+        // returns the event as the engine gets it, or null if the engine doesn't subscribe to it.
+        // tag reports keep their numbering when filtered, even if no tag is left. the tags of a
+        // filtered report are copies, as encoding a report strips the epc from its tags
+        @SuppressWarnings("unchecked")
+        synchronized HashMap view(Event event) {
+
+            if (event.target != null && event.target != this) return null;
+            if (events.size() > 0 && channel(event.event) != Channels.control && !events.contains(event.event)) return null;
+            if (prefixes.size() == 0 || !(event.map.get("tags") instanceof ArrayList)) return event.map;
+            if (event.event != Events.readRfid && event.event != Events.rfidSnapshot) return event.map;
+
+            ArrayList<HashMap<String, Object>> tags = new ArrayList<>();
+            for (HashMap<String, Object> tag : (ArrayList<HashMap<String, Object>>) event.map.get("tags")) {
+                Object epc = tag.get("epc");
+                if (epc != null && matches(epc.toString())) tags.add(new HashMap<>(tag));
+            }
+
+            HashMap map = new HashMap(event.map);
+            map.put("tags", tags);
+            return map;
+        }
+
+        private boolean matches(String epc) {
+            for (String prefix : prefixes) if (epc.startsWith(prefix)) return true;
+            return false;
+        }
+    }
+
+    private static class Channel {
+
+        // events waiting for the next delivery, in the order they were sent
+        final ArrayList<Event> pending = new ArrayList<>();
+    }
+
+    private static class Event {
+
+        // the engine the event is for. null for every engine
+        final ZebraDevice.Target target;
+
+        final ZebraDevice.Interfaces source;
+        final Events event;
+        final long posted;
+
+        // us the event was queued, for the trace
+        final long queued;
+
+        HashMap map;
+
+        // position of each tag in a tag report. built on the first merge
+        private HashMap<Object, Integer> index = null;
+
+        Event(ZebraDevice.Target target, ZebraDevice.Interfaces source, Events event, HashMap map, long posted) {
+            this.target = target;
+            this.source = source;
+            this.event = event;
+            this.map = map;
+            this.posted = posted;
+            this.queued = map.get("trace") instanceof HashMap ? ZebraTrace.now() : 0;
+        }
+
+        HashMap stamps() {
+            return map.get("trace") instanceof HashMap ? (HashMap) map.get("trace") : null;
+        }
+
+        // merges a newer manifest progress report. its counts replace these, and the tags it found
+        // and didn't expect follow on from those of this report
+        @SuppressWarnings("unchecked")
+        void mergeProgress(HashMap newer) {
+            for (String key : new String[] { "foundTags", "unexpectedTags" }) {
+                ArrayList<Object> tags = new ArrayList<>();
+                if (map.get(key) instanceof ArrayList) tags.addAll((ArrayList<Object>) map.get(key));
+                if (newer.get(key) instanceof ArrayList) tags.addAll((ArrayList<Object>) newer.get(key));
+                newer.put(key, tags);
+            }
+            map = newer;
+        }
+
+        // merges the tags of a newer report. the stamps of this report are kept as its reads are older
+        @SuppressWarnings("unchecked")
+        void mergeTags(HashMap newer) {
+
+            ArrayList<HashMap<String, Object>> tags = (ArrayList<HashMap<String, Object>>) map.get("tags");
+            ArrayList<HashMap<String, Object>> added = (ArrayList<HashMap<String, Object>>) newer.get("tags");
+            if (tags == null || added == null) return;
+
+            if (index == null) {
+                index = new HashMap<>();
+                for (int i = 0; i < tags.size(); i++) index.put(tags.get(i).get("epc"), i);
+            }
+
+            // the merged report ends where the newer report ends
+            if (newer.containsKey("sequence")) map.put("sequence", newer.get("sequence"));
+
+            for (HashMap<String, Object> tag : added) {
+                Object epc = tag.get("epc");
+                Integer at = index.get(epc);
+                if (at != null) tags.set(at, tag);
+                else {
+                    index.put(epc, tags.size());
+                    tags.add(tag);
+                }
+            }
+        }
+    }
+}
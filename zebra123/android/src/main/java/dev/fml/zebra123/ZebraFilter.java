@@ -0,0 +1,277 @@
+package dev.fml.zebra123;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// rule based filter of the raw reads, evaluated in the read path before the tag store. flutter
+// sends the spec once and it is compiled into a chain of rules, cheapest first, so most rejected
+// reads cost a compare or a hash lookup. each rule counts the reads it rejects
+public class ZebraFilter {
+
+    enum Rules {
+        rssi,
+        antenna,
+        exclude,
+        include,
+        epcMask,
+        tidMask,
+        interval
+    }
+
+    private final Rule[] rules;
+
+    // reads accepted by every rule
+    private long passed = 0;
+
+    private ZebraFilter(ArrayList<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+    }
+
+    // compiles a spec. empty values leave their rule out. returns null if no rule is left
+    //   rssi      weakest rssi accepted
+    //   antennas  antennas accepted
+    //   include   epc's accepted. every other epc is rejected
+    //   exclude   epc's rejected
+    //   epcMask   value, mask and bit offset the epc must match. value and mask are hex
+    //   tidMask   value, mask and bit offset the tid, read into the memory bank data, must match
+    //   interval  ms a tag is rejected for after each read accepted
+    public static ZebraFilter compile(Integer rssi, Collection<Short> antennas, Collection<String> include, Collection<String> exclude, Mask epcMask, Mask tidMask, int interval) {
+
+        ArrayList<Rule> rules = new ArrayList<>();
+        if (rssi != null) rules.add(new RssiRule(rssi.shortValue()));
+        if (antennas != null && antennas.size() > 0) rules.add(new AntennaRule(antennas));
+        if (exclude != null && exclude.size() > 0) rules.add(new ListRule(Rules.exclude, exclude, false));
+        if (include != null && include.size() > 0) rules.add(new ListRule(Rules.include, include, true));
+        if (epcMask != null && epcMask.isValid()) rules.add(new MaskRule(Rules.epcMask, epcMask));
+        if (tidMask != null && tidMask.isValid()) rules.add(new MaskRule(Rules.tidMask, tidMask));
+
+        // stateful, so last. only reads every other rule accepts restart a tag's interval
+        if (interval > 0) rules.add(new IntervalRule(interval));
+
+        return rules.size() > 0 ? new ZebraFilter(rules) : null;
+    }
+
+    // returns true if a rule needs the tid read into the memory bank data
+    public boolean readsTid() {
+        for (Rule rule : rules) if (rule.type == Rules.tidMask) return true;
+        return false;
+    }
+
+    // returns true if every rule accepts the read
+    public boolean accepts(TagInfo tag, long now) {
+        for (Rule rule : rules) {
+            if (!rule.accepts(tag, now)) {
+                rule.hits++;
+                return false;
+            }
+        }
+        passed++;
+        return true;
+    }
+
+    public HashMap<String, Object> toMap() {
+
+        ArrayList<HashMap<String, Object>> list = new ArrayList<>();
+        long rejected = 0;
+        for (Rule rule : rules) {
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("rule", rule.type.toString());
+            map.put("hits", rule.hits);
+            list.add(map);
+            rejected += rule.hits;
+        }
+
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("rules", list);
+        map.put("passed", passed);
+        map.put("rejected", rejected);
+        return map;
+    }
+
+    // value and mask of a bit pattern at a bit offset into a hex string
+    static class Mask {
+
+        final String value;
+        final String mask;
+        final int offset;
+
+        Mask(String value, String mask, int offset) {
+            this.value = value != null ? value.trim() : "";
+            this.mask = mask != null && mask.trim().length() > 0 ? mask.trim() : null;
+            this.offset = Math.max(0, offset);
+        }
+
+        boolean isValid() {
+            return isHex(value) && (mask == null || (isHex(mask) && mask.length() == value.length()));
+        }
+
+        private static boolean isHex(String value) {
+            if (value == null || value.length() == 0) return false;
+            for (int i = 0; i < value.length(); i++) {
+                if (Character.digit(value.charAt(i), 16) < 0) return false;
+            }
+            return true;
+        }
+    }
+
+    private abstract static class Rule {
+
+        final Rules type;
+
+        // reads rejected
+        long hits = 0;
+
+        Rule(Rules type) {
+            this.type = type;
+        }
+
+        abstract boolean accepts(TagInfo tag, long now);
+    }
+
+    private static class RssiRule extends Rule {
+
+        private final short floor;
+
+        RssiRule(short floor) {
+            super(Rules.rssi);
+            this.floor = floor;
+        }
+
+        @Override
+        boolean accepts(TagInfo tag, long now) {
+            return tag.rssi >= floor;
+        }
+    }
+
+    private static class AntennaRule extends Rule {
+
+        // indexed by antenna. antennas are numbered from 1 and sleds have few
+        private final boolean[] accepted;
+
+        AntennaRule(Collection<Short> antennas) {
+            super(Rules.antenna);
+            int max = 0;
+            for (Short antenna : antennas) max = Math.max(max, antenna);
+            accepted = new boolean[max + 1];
+            for (Short antenna : antennas) if (antenna >= 0) accepted[antenna] = true;
+        }
+
+        @Override
+        boolean accepts(TagInfo tag, long now) {
+            return tag.antenna >= 0 && tag.antenna < accepted.length && accepted[tag.antenna];
+        }
+    }
+
+    private static class ListRule extends Rule {
+
+        private final HashSet<String> epcs;
+        private final boolean include;
+
+        ListRule(Rules type, Collection<String> epcs, boolean include) {
+            super(type);
+            this.epcs = new HashSet<>(epcs);
+            this.include = include;
+        }
+
+        @Override
+        boolean accepts(TagInfo tag, long now) {
+            return epcs.contains(tag.epc) == include;
+        }
+    }
+
+    // compares the masked bits a nibble at a time, without decoding the hex
+    private static class MaskRule extends Rule {
+
+        // nibble index, and the mask and value bits within it, of each nibble compared
+        private final int[] nibbles;
+        private final int[] masks;
+        private final int[] values;
+
+        MaskRule(Rules type, Mask mask) {
+            super(type);
+
+            int bits = mask.value.length() * 4;
+            int first = mask.offset / 4;
+            int count = (mask.offset + bits + 3) / 4 - first;
+            int[] masks = new int[count];
+            int[] values = new int[count];
+
+            for (int i = 0; i < bits; i++) {
+                int m = mask.mask == null ? 1 : (Character.digit(mask.mask.charAt(i / 4), 16) >> (3 - i % 4)) & 1;
+                if (m == 0) continue;
+                int v = (Character.digit(mask.value.charAt(i / 4), 16) >> (3 - i % 4)) & 1;
+                int bit = mask.offset + i;
+                masks[bit / 4 - first] |= 1 << (3 - bit % 4);
+                values[bit / 4 - first] |= v << (3 - bit % 4);
+            }
+
+            int used = 0;
+            for (int m : masks) if (m != 0) used++;
+            this.nibbles = new int[used];
+            this.masks = new int[used];
+            this.values = new int[used];
+            for (int i = 0, j = 0; i < count; i++) {
+                if (masks[i] == 0) continue;
+                this.nibbles[j] = first + i;
+                this.masks[j] = masks[i];
+                this.values[j] = values[i];
+                j++;
+            }
+        }
+
+        @Override
+        boolean accepts(TagInfo tag, long now) {
+            String data = type == Rules.tidMask ? tag.memoryBankData : tag.epc;
+            if (data == null) return false;
+            for (int i = 0; i < nibbles.length; i++) {
+                if (nibbles[i] >= data.length()) return false;
+                int digit = Character.digit(data.charAt(nibbles[i]), 16);
+                if (digit < 0 || (digit & masks[i]) != values[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    private static class IntervalRule extends Rule {
+
+        // tags held before the expired ones are swept
+        static final int SWEEP = 4096;
+
+        private final int interval;
+
+        // ms each tag was last accepted
+        private final HashMap<String, Long> accepted = new HashMap<>();
+
+        // size the map is swept at. doubles when a sweep frees less than half, so a population
+        // larger than the threshold isn't swept on every new tag
+        private int sweep = SWEEP;
+
+        IntervalRule(int interval) {
+            super(Rules.interval);
+            this.interval = interval;
+        }
+
+        @Override
+        boolean accepts(TagInfo tag, long now) {
+            Long last = accepted.get(tag.epc);
+            if (last != null && now - last < interval) return false;
+            if (last == null && accepted.size() >= sweep) sweep(now);
+            accepted.put(tag.epc, now);
+            return true;
+        }
+
+        // drops the tags whose interval has passed. they would be accepted anyway
+        private void sweep(long now) {
+            Iterator<Long> iterator = accepted.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next() >= interval) iterator.remove();
+            }
+            sweep = Math.max(SWEEP, accepted.size() * 2);
+        }
+    }
+}
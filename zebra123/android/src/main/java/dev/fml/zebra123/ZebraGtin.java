@@ -0,0 +1,167 @@
+package dev.fml.zebra123;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// aggregates rfid reads into unique tag counts per product (gtin) and antenna
+public class ZebraGtin {
+
+    // key used for tags that are not sgtin encoded
+    public static final String UNKNOWN = "unknown";
+
+    // sgtin partition table. company prefix bits/digits, item reference bits/digits
+    private static final int[][] PARTITIONS = {
+            {40, 12, 4, 1},
+            {37, 11, 7, 2},
+            {34, 10, 10, 3},
+            {30, 9, 14, 4},
+            {27, 8, 17, 5},
+            {24, 7, 20, 6},
+            {20, 6, 24, 7}
+    };
+
+    // holds the epc's already counted
+    private final HashSet<String> seen = new HashSet<>();
+
+    // holds the running counts per gtin
+    private final HashMap<String, GtinInfo> counts = new HashMap<>();
+
+    // holds the gtin's changed since the last flush
+    private final HashSet<String> changed = new HashSet<>();
+
+    private long flushed = 0;
+
+    // counts the tag once. returns true if the tag had not been counted before
+    public synchronized boolean add(String epc, short antenna) {
+
+        if (epc == null || !seen.add(epc)) return false;
+
+        String gtin = decode(epc);
+        if (gtin == null) gtin = UNKNOWN;
+
+        GtinInfo info = counts.get(gtin);
+        if (info == null) {
+            info = new GtinInfo(gtin);
+            counts.put(gtin, info);
+        }
+        info.count++;
+        info.delta++;
+
+        // tags are assigned to the zone of the antenna they are first seen on
+        Integer zone = info.antennas.get(antenna);
+        info.antennas.put(antenna, zone == null ? 1 : zone + 1);
+
+        changed.add(gtin);
+        return true;
+    }
+
+    // returns true if there are changes and at least interval ms passed since the last flush
+    public synchronized boolean due(long now, int interval) {
+        return changed.size() > 0 && now - flushed >= interval;
+    }
+
+    // returns the count deltas since the last flush and resets them
+    public synchronized ArrayList<HashMap<String, Object>> flush(long now) {
+
+        ArrayList<HashMap<String, Object>> list = new ArrayList<>();
+        for (String gtin : changed) {
+            GtinInfo info = counts.get(gtin);
+            if (info == null) continue;
+
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("gtin", info.gtin);
+            map.put("count", info.count);
+            map.put("delta", info.delta);
+
+            HashMap<String, Object> antennas = new HashMap<>();
+            for (Short antenna : info.antennas.keySet())
+                antennas.put(antenna.toString(), info.antennas.get(antenna));
+            map.put("antennas", antennas);
+
+            list.add(map);
+            info.delta = 0;
+        }
+        changed.clear();
+        flushed = now;
+        return list;
+    }
+
+    // returns the number of unique tags counted
+    public synchronized int size() {
+        return seen.size();
+    }
+
+    public synchronized void clear() {
+        seen.clear();
+        counts.clear();
+        changed.clear();
+        flushed = 0;
+    }
+
+    // decodes an sgtin-96 or sgtin-198 epc into a gtin-14. returns null if the epc is not sgtin encoded
+    public static String decode(String epc) {
+
+        try {
+            if (epc == null || epc.length() < 16) return null;
+
+            // the first 64 bits hold the header, filter, partition, company prefix and item reference
+            long bits = (Long.parseLong(epc.substring(0, 8), 16) << 32) | Long.parseLong(epc.substring(8, 16), 16);
+
+            int header = (int) (bits >>> 56);
+            if (header != 0x30 && header != 0x36) return null;
+
+            int partition = (int) ((bits >>> 50) & 0x7);
+            if (partition >= PARTITIONS.length) return null;
+
+            int[] p = PARTITIONS[partition];
+
+            // company prefix and item reference are 44 bits following the partition
+            long value = (bits >>> 6) & 0xFFFFFFFFFFFL;
+            long company = value >>> p[2];
+            long item = value & ((1L << p[2]) - 1);
+
+            String companyDigits = pad(company, p[1]);
+            String itemDigits = pad(item, p[3]);
+            if (companyDigits == null || itemDigits == null) return null;
+
+            // the first digit of the item reference is the gtin indicator digit
+            String gtin = itemDigits.substring(0, 1) + companyDigits + itemDigits.substring(1);
+            return gtin + checkDigit(gtin);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    // left pads the value with zeros. returns null if it does not fit
+    private static String pad(long value, int digits) {
+        String s = Long.toString(value);
+        if (s.length() > digits) return null;
+        StringBuilder sb = new StringBuilder();
+        for (int i = s.length(); i < digits; i++) sb.append('0');
+        return sb.append(s).toString();
+    }
+
+    // gs1 mod 10 check digit
+    private static int checkDigit(String digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(digits.length() - 1 - i) - '0';
+            sum += (i % 2 == 0) ? digit * 3 : digit;
+        }
+        return (10 - (sum % 10)) % 10;
+    }
+
+    private static class GtinInfo {
+
+        final String gtin;
+        int count;
+        int delta;
+        final HashMap<Short, Integer> antennas = new HashMap<>();
+
+        GtinInfo(String gtin) {
+            this.gtin = gtin;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package dev.fml.zebra123;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.util.HashMap;
+
+// process wide owner of the device and its event queue. every flutter engine attached to the plugin
+// and the background service hold a reference to the hub. the device is connected and configured
+// once, by the first engine to listen, and its events are fanned out to every engine through the
+// shared queue. the device is disconnected when the last reference is released
+public class ZebraHub {
+
+    private static final ZebraDevice.Interfaces INTERFACE = ZebraDevice.Interfaces.unknown;
+
+    private static ZebraHub hub = null;
+    private static int references = 0;
+
+    private final Context context;
+
+    // queues the events of the device for every engine
+    final ZebraEventQueue events;
+
+    // the connected device. null until the first engine listens
+    private ZebraDevice device = null;
+
+    final boolean supportsRfid;
+    final boolean supportsDatawedge;
+
+    private ZebraHub(Context context) {
+        this.context = context;
+        this.events = new ZebraEventQueue(context);
+        this.supportsRfid = ZebraRfid.isSupported(context);
+        this.supportsDatawedge = ZebraDataWedge.isSupported(context);
+    }
+
+    // returns the hub, creating it on the first reference
+    public static synchronized ZebraHub acquire(Context context) {
+        if (hub == null) hub = new ZebraHub(context);
+        references++;
+        return hub;
+    }
+
+    // releases a reference. the last disconnects and disposes of the device
+    public static void release() {
+
+        ZebraHub released = null;
+        synchronized (ZebraHub.class) {
+            if (references == 0) return;
+            references--;
+            if (references == 0) {
+                released = hub;
+                hub = null;
+            }
+        }
+        if (released != null) released.dispose();
+    }
+
+    public synchronized ZebraDevice getDevice() {
+        return device;
+    }
+
+    // connects the device unless it is already connected. returns true if it was connected now
+    public synchronized boolean connect() {
+
+        if (device != null) return false;
+
+        try {
+
+            // device supports rfid?
+            if (supportsRfid) {
+                device = new ZebraRfid(context, events);
+                device.connect();
+            }
+
+            // datawedge supported?
+            else if (supportsDatawedge) {
+                device = new ZebraDataWedge(context, events);
+                device.connect();
+            }
+
+            // no supported device
+            else {
+                HashMap<String, Object> map =new HashMap<>();
+                map.put("status", ZebraDevice.ZebraConnectionStatus.error.toString());
+
+                // notify device
+                events.send(INTERFACE, ZebraDevice.Events.connectionStatus, map);
+            }
+        }
+        catch(Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error connecting to device" + e.getMessage());
+            events.send(INTERFACE, ZebraDevice.Events.error, ZebraDevice.toError("Error during connect()", e));
+        }
+        return true;
+    }
+
+    // swaps the device for one replaying a recording through the rfid pipeline. stopping the
+    // replay reconnects the device. every engine gets the replayed events
+    public synchronized void replay(ZebraDevice.Requests request, File file, double speed) {
+
+        try {
+
+            // release the current device
+            if (device != null) {
+                device.disconnect();
+                device.dispose();
+            }
+            device = null;
+
+            if (request == ZebraDevice.Requests.start) {
+                device = new ZebraRfid(context, events, new ZebraReplayReader(file, speed));
+                device.connect();
+            }
+            else connect();
+        }
+        catch(Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error replaying recording" + e.getMessage());
+            events.send(INTERFACE, ZebraDevice.Events.error, ZebraDevice.toError("Error during replay()", e));
+        }
+    }
+
+    private synchronized void dispose() {
+        if (device != null) {
+            device.disconnect();
+            device.dispose();
+        }
+        device = null;
+    }
+}
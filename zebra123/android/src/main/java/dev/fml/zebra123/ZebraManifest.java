@@ -0,0 +1,98 @@
+package dev.fml.zebra123;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// reconciles rfid reads against a list of expected epc's
+public class ZebraManifest {
+
+    // holds the expected epc's not yet found
+    private final HashSet<String> missing = new HashSet<>();
+
+    // holds the expected epc's found
+    private final HashSet<String> found = new HashSet<>();
+
+    // holds the epc's read that were not expected
+    private final HashSet<String> unexpected = new HashSet<>();
+
+    // holds the epc's found or unexpected since the last progress report
+    private final ArrayList<String> newlyFound = new ArrayList<>();
+    private final ArrayList<String> newlyUnexpected = new ArrayList<>();
+
+    private final int expected;
+
+    // stop the inventory once every expected tag is found. an empty manifest never stops it
+    public final boolean autoStop;
+
+    // true once the auto stop has been handed out
+    private boolean stopping = false;
+
+    private long reported = 0;
+
+    ZebraManifest(Collection<String> epcs, boolean autoStop) {
+        for (String epc : epcs) {
+            if (epc != null && epc.trim().length() > 0) missing.add(epc.trim());
+        }
+        this.expected = missing.size();
+        this.autoStop = autoStop && expected > 0;
+    }
+
+    // reconciles a single read. returns true if the sets changed
+    public synchronized boolean add(String epc) {
+
+        if (epc == null) return false;
+
+        if (missing.remove(epc)) {
+            found.add(epc);
+            newlyFound.add(epc);
+            return true;
+        }
+
+        if (!found.contains(epc) && unexpected.add(epc)) {
+            newlyUnexpected.add(epc);
+            return true;
+        }
+
+        return false;
+    }
+
+    // returns true once every expected tag has been found
+    public synchronized boolean isComplete() {
+        return missing.size() == 0;
+    }
+
+    // returns true exactly once, when the manifest auto stops and every expected tag is found.
+    // reads after that don't stop the inventory again
+    public synchronized boolean stop() {
+        if (!autoStop || stopping || missing.size() > 0) return false;
+        stopping = true;
+        return true;
+    }
+
+    // returns true if there are changes and at least interval ms passed since the last report
+    public synchronized boolean due(long now, int interval) {
+        return (newlyFound.size() > 0 || newlyUnexpected.size() > 0) && now - reported >= interval;
+    }
+
+    // returns the progress since the last report. the final report includes the missing epc's
+    public synchronized HashMap<String, Object> progress(long now, boolean last) {
+
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("expected", expected);
+        map.put("found", found.size());
+        map.put("missing", missing.size());
+        map.put("unexpected", unexpected.size());
+        map.put("complete", missing.size() == 0);
+        map.put("final", last);
+        map.put("foundTags", new ArrayList<>(newlyFound));
+        map.put("unexpectedTags", new ArrayList<>(newlyUnexpected));
+        if (last) map.put("missingTags", new ArrayList<>(missing));
+
+        newlyFound.clear();
+        newlyUnexpected.clear();
+        reported = now;
+        return map;
+    }
+}
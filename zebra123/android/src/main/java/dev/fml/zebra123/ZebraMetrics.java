@@ -0,0 +1,251 @@
+package dev.fml.zebra123;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// process wide counters and histograms of the read path. recording is lock free and costs a few
+// atomic increments, so the metrics are always on. rates are measured between snapshots
+public class ZebraMetrics {
+
+    public static final ZebraMetrics shared = new ZebraMetrics();
+
+    // rfid reads delivered by the reader
+    public final Meter reads = new Meter();
+
+    // tags read for the first time since the store was cleared
+    public final Meter unique = new Meter();
+
+    // barcodes delivered by datawedge
+    public final Meter barcodes = new Meter();
+
+    // events sent to flutter and events dropped for lack of a sink
+    public final Meter events = new Meter();
+    public final Meter dropped = new Meter();
+
+    // events merged into a pending event they superseded
+    public final Meter merged = new Meter();
+
+    // reads rejected by the read filter
+    public final Meter filtered = new Meter();
+
+    // tag reports held back for lack of credit, and held back tags dropped or spilled
+    public final Meter stalled = new Meter();
+    public final Meter overflowed = new Meter();
+
+    // method calls from flutter
+    public final Meter methods = new Meter();
+
+    // events posted to the main thread and not yet delivered
+    public final Gauge queue = new Gauge();
+
+    // us an event waits on the main thread handler before it is delivered
+    public final Histogram postWait = new Histogram();
+
+    // tags per rfid report
+    public final Histogram batch = new Histogram();
+
+    // us spent handling a method call
+    public final Histogram methodTime = new Histogram();
+
+    // us from a trigger press to the first tag read
+    public final Histogram firstRead = new Histogram();
+
+    private final long started = System.currentTimeMillis();
+
+    // previous snapshot time. rates are measured from it
+    private long snapshot = started;
+
+    // called before an event is posted to the main thread. returns the post time
+    public long posted() {
+        queue.increment();
+        return System.nanoTime();
+    }
+
+    // called once a posted event is delivered
+    public void delivered(long posted) {
+        queue.decrement();
+        postWait.record((System.nanoTime() - posted) / 1000);
+    }
+
+    // returns the metrics. rates are per second since the previous snapshot
+    public synchronized HashMap<String, Object> toMap() {
+
+        long now = System.currentTimeMillis();
+        long elapsed = Math.max(1, now - snapshot);
+        snapshot = now;
+
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("uptime", now - started);
+        map.put("interval", elapsed);
+        map.put("reads", reads.toMap(elapsed));
+        map.put("unique", unique.toMap(elapsed));
+        map.put("barcodes", barcodes.toMap(elapsed));
+        map.put("events", events.toMap(elapsed));
+        map.put("dropped", dropped.toMap(elapsed));
+        map.put("merged", merged.toMap(elapsed));
+        map.put("filtered", filtered.toMap(elapsed));
+        map.put("stalled", stalled.toMap(elapsed));
+        map.put("overflowed", overflowed.toMap(elapsed));
+        map.put("methods", methods.toMap(elapsed));
+        map.put("queue", queue.toMap());
+        map.put("postWait", postWait.toMap());
+        map.put("batch", batch.toMap());
+        map.put("methodTime", methodTime.toMap());
+        map.put("firstRead", firstRead.toMap());
+        return map;
+    }
+
+    // clears every metric
+    public synchronized void reset() {
+        reads.reset();
+        unique.reset();
+        barcodes.reset();
+        events.reset();
+        dropped.reset();
+        merged.reset();
+        filtered.reset();
+        stalled.reset();
+        overflowed.reset();
+        methods.reset();
+        queue.reset();
+        postWait.reset();
+        batch.reset();
+        methodTime.reset();
+        firstRead.reset();
+        snapshot = System.currentTimeMillis();
+    }
+
+    public static class Meter {
+
+        private final AtomicLong count = new AtomicLong();
+
+        // count at the previous snapshot
+        private long last = 0;
+
+        public void mark() {
+            count.incrementAndGet();
+        }
+
+        public void mark(long n) {
+            count.addAndGet(n);
+        }
+
+        public long count() {
+            return count.get();
+        }
+
+        HashMap<String, Object> toMap(long elapsed) {
+            long value = count.get();
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("count", value);
+            map.put("rate", (value - last) * 1000.0 / elapsed);
+            last = value;
+            return map;
+        }
+
+        void reset() {
+            count.set(0);
+            last = 0;
+        }
+    }
+
+    public static class Gauge {
+
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void increment() {
+            long current = value.incrementAndGet();
+            long peak;
+            while (current > (peak = max.get()) && !max.compareAndSet(peak, current));
+        }
+
+        public void decrement() {
+            value.decrementAndGet();
+        }
+
+        HashMap<String, Object> toMap() {
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("value", value.get());
+            map.put("max", max.get());
+            return map;
+        }
+
+        void reset() {
+            max.set(value.get());
+        }
+    }
+
+    // histogram of non negative values in power of 2 buckets. percentiles are interpolated
+    // within a bucket, so they are accurate to within a factor of 2 at worst
+    public static class Histogram {
+
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+
+            if (value < 0) value = 0;
+
+            // bucket 0 holds 0, bucket n holds [2^(n-1), 2^n)
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long peak;
+            while (value > (peak = max.get()) && !max.compareAndSet(peak, value));
+        }
+
+        public long count() {
+            return count.get();
+        }
+
+        // returns the value at the percentile, 0 to 100
+        public long percentile(double percentile) {
+
+            long total = count.get();
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            if (rank < 1) rank = 1;
+
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = buckets.get(i);
+                if (n == 0) continue;
+                if (seen + n >= rank) {
+                    if (i == 0) return 0;
+                    long low = 1L << (i - 1);
+                    long high = Math.min(max.get(), (i == BUCKETS - 1) ? Long.MAX_VALUE : (1L << i) - 1);
+                    return low + (long) ((high - low) * ((double) (rank - seen) / n));
+                }
+                seen += n;
+            }
+            return max.get();
+        }
+
+        HashMap<String, Object> toMap() {
+            long total = count.get();
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("count", total);
+            map.put("mean", total > 0 ? (double) sum.get() / total : 0.0);
+            map.put("p50", percentile(50));
+            map.put("p90", percentile(90));
+            map.put("p99", percentile(99));
+            map.put("max", max.get());
+            return map;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+    }
+}
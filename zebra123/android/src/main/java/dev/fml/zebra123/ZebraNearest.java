@@ -0,0 +1,189 @@
+package dev.fml.zebra123;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+// tracks the k tags with the strongest smoothed rssi. each read costs O(log k)
+public class ZebraNearest {
+
+    // weight of a new read in the smoothed rssi
+    private static final double ALPHA = 0.3;
+
+    // smoothed rssi lost per second a tag is not read
+    private static final double DECAY = 10.0;
+
+    // tags not read for this long are dropped
+    private static final long EXPIRY = 3000;
+
+    private final int k;
+
+    // min heap on smoothed rssi. the weakest of the k tags is at the root
+    private final Entry[] heap;
+    private int size = 0;
+
+    // maps an epc to its heap entry
+    private final HashMap<String, Entry> entries = new HashMap<>();
+
+    private long flushed = 0;
+    private boolean changed = false;
+
+    ZebraNearest(int k) {
+        this.k = Math.max(1, k);
+        this.heap = new Entry[this.k];
+    }
+
+    // applies a read. returns true if the top k changed
+    public synchronized boolean add(String epc, short rssi, long now) {
+
+        if (epc == null) return false;
+
+        Entry entry = entries.get(epc);
+
+        // tag already in the top k
+        if (entry != null) {
+            entry.score = score(ALPHA * rssi + (1 - ALPHA) * aged(entry, now), now);
+            entry.seen = now;
+            siftDown(entry.index);
+            siftUp(entry.index);
+            changed = true;
+            return true;
+        }
+
+        // new tag with room in the heap
+        if (size < k) {
+            entry = new Entry(epc, rssi, now);
+            entry.index = size;
+            heap[size++] = entry;
+            entries.put(epc, entry);
+            siftUp(entry.index);
+            changed = true;
+            return true;
+        }
+
+        // replace the weakest if the new tag is stronger
+        Entry weakest = heap[0];
+        if (weakest.score < score(rssi, now)) {
+            entries.remove(weakest.epc);
+            entry = new Entry(epc, rssi, now);
+            entry.index = 0;
+            heap[0] = entry;
+            entries.put(epc, entry);
+            siftDown(0);
+            changed = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    // returns true if the top k changed and at least interval ms passed since the last update
+    public synchronized boolean due(long now, int interval) {
+        return changed && now - flushed >= interval;
+    }
+
+    // returns the top k strongest first, aged to now
+    public synchronized ArrayList<HashMap<String, Object>> flush(long now) {
+
+        changed = false;
+        flushed = now;
+
+        // drop tags that have not been read recently
+        for (int i = size - 1; i >= 0; i--) {
+            if (now - heap[i].seen > EXPIRY) remove(i);
+        }
+
+        // order by aged rssi
+        ArrayList<Entry> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) list.add(heap[i]);
+        Collections.sort(list, (a, b) -> Double.compare(b.score, a.score));
+
+        ArrayList<HashMap<String, Object>> tags = new ArrayList<>();
+        for (Entry entry : list) {
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("epc", entry.epc);
+            map.put("rssi", Math.round(aged(entry, now) * 10) / 10.0);
+            map.put("lastSeen", entry.seen);
+            tags.add(map);
+        }
+
+        return tags;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < size; i++) heap[i] = null;
+        size = 0;
+        entries.clear();
+        changed = false;
+        flushed = 0;
+    }
+
+    // the heap is keyed on the smoothed rssi plus the decay accrued up to the time of the read.
+    // subtracting the decay up to now gives the aged rssi, so the order by key is the order by
+    // aged rssi at any point in time and entries never need to be re-sorted as they age
+    private static double score(double rssi, long now) {
+        return rssi + DECAY * now / 1000.0;
+    }
+
+    // smoothed rssi decayed by the time since the tag was last read
+    private static double aged(Entry entry, long now) {
+        return entry.score - DECAY * now / 1000.0;
+    }
+
+    private void remove(int index) {
+        entries.remove(heap[index].epc);
+        size--;
+        if (index != size) {
+            heap[index] = heap[size];
+            heap[index].index = index;
+            heap[size] = null;
+            siftDown(index);
+            siftUp(index);
+        }
+        else heap[size] = null;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[i].score >= heap[parent].score) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            int right = left + 1;
+            int smallest = i;
+            if (left < size && heap[left].score < heap[smallest].score) smallest = left;
+            if (right < size && heap[right].score < heap[smallest].score) smallest = right;
+            if (smallest == i) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        Entry entry = heap[a];
+        heap[a] = heap[b];
+        heap[b] = entry;
+        heap[a].index = a;
+        heap[b].index = b;
+    }
+
+    private static class Entry {
+
+        final String epc;
+        double score;
+        long seen;
+        int index;
+
+        Entry(String epc, short rssi, long seen) {
+            this.epc = epc;
+            this.score = score(rssi, seen);
+            this.seen = seen;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package dev.fml.zebra123;
+
+import java.util.HashMap;
+
+import dev.fml.zebra123.ZebraDevice.Modes;
+import dev.fml.zebra123.ZebraDevice.Stops;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// the rfid reader as seen by ZebraRfid. ZebraApi3Reader talks to a physical reader through
+// the rfid api3 library, ZebraSimulatedReader generates reads in process without hardware
+public interface ZebraReader {
+
+    enum Banks {
+        epc,
+        user,
+        reserved
+    }
+
+    // condition that ends an inventory on the reader, without a stop from the host
+    //   duration  the inventory runs for timeout ms
+    //   tags      the inventory ends once count tags are read, or after timeout ms
+    //   attempts  the inventory ends after count inventory rounds, or after timeout ms
+    // a timeout of 0 leaves the tags and attempts conditions without one
+    class Stop {
+
+        final Stops type;
+        final int count;
+        final int timeout;
+
+        Stop(Stops type, int count, int timeout) {
+            this.type = type;
+            this.count = Math.max(0, Math.min(count, Short.MAX_VALUE));
+            this.timeout = Math.max(0, timeout);
+        }
+
+        boolean isValid() {
+            switch (type) {
+                case duration:
+                    return timeout > 0;
+                case tags:
+                case attempts:
+                    return count > 0;
+                default:
+                    return false;
+            }
+        }
+
+        HashMap<String, Object> toMap() {
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("type", type.toString());
+            map.put("count", count);
+            map.put("timeout", timeout);
+            return map;
+        }
+    }
+
+    interface Listener {
+
+        // a tag was read
+        void onRead(TagInfo tag);
+
+        // a barcode was read. only raised when replaying a recording
+        void onBarcode(String barcode, String format);
+
+        // the handheld trigger was pressed or released
+        void onTrigger(boolean pressed);
+
+        // an inventory started with a stop condition was ended by the reader
+        void onInventoryStop();
+
+        // the battery % of the reader and whether it is charging
+        void onBattery(int level, boolean charging);
+
+        // the temperature of the reader in degrees celsius
+        void onTemperature(int temperature);
+
+        // the reader was disconnected
+        void onDisconnect();
+    }
+
+    void setListener(Listener listener);
+
+    // connects to and configures the reader. returns true if connected
+    boolean connect();
+
+    void disconnect();
+
+    boolean isConnected();
+
+    // sets the function of the handheld trigger
+    void setMode(Modes mode);
+
+    void startInventory() throws Exception;
+
+    // starts an inventory the reader ends itself once the stop condition is met
+    void startInventory(Stop stop) throws Exception;
+
+    void stopInventory() throws Exception;
+
+    // reads the tid bank of each tag inventoried into its memory bank data. applies from the next
+    // inventory started
+    void readTid(boolean read);
+
+    // requests the battery and temperature of the reader, raised through the listener
+    void requestStatus();
+
+    // configures the reader for tag access operations
+    void prepareAccess();
+
+    // writes data to a memory bank of the tag starting at the word offset
+    void write(String epc, String password, Banks bank, String data, int offset) throws Exception;
+}
@@ -0,0 +1,182 @@
+package dev.fml.zebra123;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// records the raw reads, barcodes, trigger pulls and disconnects of a session to a binary file
+// so it can be replayed through the pipeline by ZebraReplayReader. each record is a type byte
+// and the ms since the previous record as a varint, followed by the payload. epc's are packed
+// as bytes, so a read takes about 20 bytes
+public class ZebraRecorder {
+
+    static final int MAGIC = 0x5A313233;
+    static final int VERSION = 1;
+
+    // record types
+    static final int READ = 1;
+    static final int BARCODE = 2;
+    static final int TRIGGER = 3;
+    static final int DISCONNECT = 4;
+
+    // optional read fields
+    static final int STATUS = 1;
+    static final int DISTANCE = 2;
+    static final int MEMORY_BANK_DATA = 4;
+    static final int LOCK_DATA = 8;
+
+    private final File file;
+    private final DataOutputStream out;
+    private long last;
+    private long records = 0;
+
+    ZebraRecorder(File file) throws IOException {
+
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists()) directory.mkdirs();
+
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        this.last = System.currentTimeMillis();
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(last);
+    }
+
+    public synchronized void read(TagInfo tag) {
+        try {
+            begin(READ);
+            writeEpc(out, tag.epc);
+            out.writeShort(tag.antenna);
+            out.writeShort(tag.rssi);
+
+            int flags = 0;
+            if (tag.status != null) flags |= STATUS;
+            if (tag.distance != 0) flags |= DISTANCE;
+            if (tag.memoryBankData != null) flags |= MEMORY_BANK_DATA;
+            if (tag.lockData != null) flags |= LOCK_DATA;
+            out.writeByte(flags);
+
+            if (tag.status != null) out.writeUTF(tag.status);
+            if (tag.distance != 0) out.writeShort(tag.distance);
+            if (tag.memoryBankData != null) out.writeUTF(tag.memoryBankData);
+            if (tag.lockData != null) out.writeUTF(tag.lockData);
+        }
+        catch (IOException e) {
+            // the recording is best effort and never interrupts the read path
+        }
+    }
+
+    public synchronized void barcode(String barcode, String format) {
+        try {
+            begin(BARCODE);
+            out.writeUTF(barcode != null ? barcode : "");
+            out.writeUTF(format != null ? format : "");
+        }
+        catch (IOException e) {
+            // the recording is best effort and never interrupts the read path
+        }
+    }
+
+    public synchronized void trigger(boolean pressed) {
+        try {
+            begin(TRIGGER);
+            out.writeBoolean(pressed);
+        }
+        catch (IOException e) {
+            // the recording is best effort and never interrupts the read path
+        }
+    }
+
+    public synchronized void disconnect() {
+        try {
+            begin(DISCONNECT);
+        }
+        catch (IOException e) {
+            // the recording is best effort and never interrupts the read path
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            out.close();
+        }
+        catch (IOException e) {}
+    }
+
+    public synchronized HashMap<String, Object> toMap() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("file", file.getAbsolutePath());
+        map.put("records", records);
+        map.put("bytes", out.size() + 0L);
+        return map;
+    }
+
+    private void begin(int type) throws IOException {
+        long now = System.currentTimeMillis();
+        out.writeByte(type);
+        writeVarint(out, Math.max(0, now - last));
+        last = now;
+        records++;
+    }
+
+    // epc's of whole hex bytes are packed, anything else is written as a string
+    private static void writeEpc(DataOutputStream out, String epc) throws IOException {
+
+        int length = epc != null ? epc.length() : 0;
+        boolean hex = length > 0 && length % 2 == 0 && length <= 508;
+        for (int i = 0; hex && i < length; i++) hex = Character.digit(epc.charAt(i), 16) >= 0;
+
+        if (!hex) {
+            out.writeByte(0xFF);
+            out.writeUTF(epc != null ? epc : "");
+            return;
+        }
+
+        out.writeByte(length / 2);
+        for (int i = 0; i < length; i += 2) {
+            out.writeByte((Character.digit(epc.charAt(i), 16) << 4) | Character.digit(epc.charAt(i + 1), 16));
+        }
+    }
+
+    static String readEpc(DataInputStream in) throws IOException {
+
+        int length = in.readUnsignedByte();
+        if (length == 0xFF) return in.readUTF();
+
+        char[] digits = "0123456789ABCDEF".toCharArray();
+        char[] epc = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = in.readUnsignedByte();
+            epc[i * 2] = digits[b >> 4];
+            epc[i * 2 + 1] = digits[b & 0x0F];
+        }
+        return new String(epc);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package dev.fml.zebra123;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import dev.fml.zebra123.ZebraDevice.Modes;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// reader that replays a session recorded by ZebraRecorder. the records are raised on a background
+// thread with the recorded gaps divided by the speed, so 1 is real time, 10 is ten times faster and
+// 0 is as fast as the pipeline takes them. the reader disconnects at the end of the recording
+public class ZebraReplayReader implements ZebraReader {
+
+    private final File file;
+    private final double speed;
+
+    private Listener listener;
+    private volatile boolean connected = false;
+    private Thread thread;
+
+    private long records = 0;
+
+    ZebraReplayReader(File file, double speed) {
+        this.file = file;
+        this.speed = Math.max(0, speed);
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized boolean connect() {
+
+        if (connected) return true;
+
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+            if (in.readInt() != ZebraRecorder.MAGIC || in.readUnsignedByte() > ZebraRecorder.VERSION) {
+                in.close();
+                return false;
+            }
+            in.readLong();
+        }
+        catch (IOException e) {
+            return false;
+        }
+
+        connected = true;
+        thread = new Thread(() -> {
+            try {
+                replay(in);
+            }
+            catch (InterruptedException e) {
+                // disconnected
+            }
+            catch (IOException e) {
+                // truncated recording
+            }
+            finally {
+                try {
+                    in.close();
+                }
+                catch (IOException e) {}
+            }
+
+            // the end of the recording
+            if (connected) {
+                connected = false;
+                if (listener != null) listener.onDisconnect();
+            }
+        }, "zebra123-replay");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        connected = false;
+        if (thread != null) thread.interrupt();
+        thread = null;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void setMode(Modes mode) {
+        // the recording already reflects the mode it was taken in
+    }
+
+    @Override
+    public void startInventory() throws Exception {
+        if (!connected) throw new Exception("Reader is not connected");
+    }
+
+    @Override
+    public void startInventory(Stop stop) throws Exception {
+        // the recording already holds the reads of the inventory, however it was ended
+        startInventory();
+    }
+
+    @Override
+    public void stopInventory() throws Exception {
+        if (!connected) throw new Exception("Reader is not connected");
+    }
+
+    @Override
+    public void readTid(boolean read) {
+        // the recording already holds the memory bank data read
+    }
+
+    @Override
+    public void requestStatus() {
+        // the recording holds no reader status
+    }
+
+    @Override
+    public void prepareAccess() {
+        // nothing to configure
+    }
+
+    @Override
+    public void write(String epc, String password, Banks bank, String data, int offset) throws Exception {
+        throw new Exception("Tags can't be written during a replay");
+    }
+
+    // returns the number of records replayed
+    public long records() {
+        return records;
+    }
+
+    private void replay(DataInputStream in) throws IOException, InterruptedException {
+
+        // recorded ns elapsed, scaled by the speed. gaps shorter than a ms are carried forward
+        long start = System.nanoTime();
+        double elapsed = 0;
+
+        while (connected) {
+
+            int type;
+            try {
+                type = in.readUnsignedByte();
+            }
+            catch (EOFException e) {
+                return;
+            }
+
+            // wait out the recorded gap
+            long gap = ZebraRecorder.readVarint(in);
+            if (speed > 0) {
+                elapsed += gap * 1000000.0 / speed;
+                long wait = (long) elapsed - (System.nanoTime() - start);
+                if (wait >= 1000000) Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+
+            switch (type) {
+
+                case ZebraRecorder.READ:
+                    TagInfo tag = new TagInfo();
+                    tag.epc = ZebraRecorder.readEpc(in);
+                    tag.antenna = in.readShort();
+                    tag.rssi = in.readShort();
+                    tag.size = tag.epc.length() / 2;
+                    int flags = in.readUnsignedByte();
+                    if ((flags & ZebraRecorder.STATUS) != 0) tag.status = in.readUTF();
+                    if ((flags & ZebraRecorder.DISTANCE) != 0) tag.distance = in.readShort();
+                    if ((flags & ZebraRecorder.MEMORY_BANK_DATA) != 0) tag.memoryBankData = in.readUTF();
+                    if ((flags & ZebraRecorder.LOCK_DATA) != 0) tag.lockData = in.readUTF();
+                    if (listener != null) listener.onRead(tag);
+                    break;
+
+                case ZebraRecorder.BARCODE:
+                    String barcode = in.readUTF();
+                    String format = in.readUTF();
+                    if (listener != null) listener.onBarcode(barcode, format);
+                    break;
+
+                case ZebraRecorder.TRIGGER:
+                    boolean pressed = in.readBoolean();
+                    if (listener != null) listener.onTrigger(pressed);
+                    break;
+
+                case ZebraRecorder.DISCONNECT:
+                    if (listener != null) listener.onDisconnect();
+                    break;
+
+                default:
+                    throw new IOException("Unknown record type " + type);
+            }
+            records++;
+        }
+    }
+}
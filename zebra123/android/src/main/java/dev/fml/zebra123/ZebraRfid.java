@@ -9,120 +9,128 @@ import android.util.Log;
 import android.content.Intent;
 import android.os.Bundle;
 
-import com.zebra.rfid.api3.ACCESS_OPERATION_CODE;
-import com.zebra.rfid.api3.ACCESS_OPERATION_STATUS;
-import com.zebra.rfid.api3.Antennas;
-import com.zebra.rfid.api3.BATCH_MODE;
-import com.zebra.rfid.api3.BEEPER_VOLUME;
-import com.zebra.rfid.api3.DYNAMIC_POWER_OPTIMIZATION;
-import com.zebra.rfid.api3.ENUM_TRANSPORT;
-import com.zebra.rfid.api3.ENUM_TRIGGER_MODE;
-import com.zebra.rfid.api3.HANDHELD_TRIGGER_EVENT_TYPE;
-import com.zebra.rfid.api3.INVENTORY_STATE;
-import com.zebra.rfid.api3.InvalidUsageException;
-import com.zebra.rfid.api3.MEMORY_BANK;
-import com.zebra.rfid.api3.OperationFailureException;
-import com.zebra.rfid.api3.RFIDReader;
-import com.zebra.rfid.api3.ReaderDevice;
-import com.zebra.rfid.api3.Readers;
-import com.zebra.rfid.api3.RegionInfo;
-import com.zebra.rfid.api3.RegulatoryConfig;
-import com.zebra.rfid.api3.RfidEventsListener;
-import com.zebra.rfid.api3.RfidReadEvents;
-import com.zebra.rfid.api3.RfidStatusEvents;
-import com.zebra.rfid.api3.SESSION;
-import com.zebra.rfid.api3.SL_FLAG;
-import com.zebra.rfid.api3.START_TRIGGER_TYPE;
-import com.zebra.rfid.api3.STATUS_EVENT_TYPE;
-import com.zebra.rfid.api3.STOP_TRIGGER_TYPE;
-import com.zebra.rfid.api3.TagAccess;
-import com.zebra.rfid.api3.TagData;
-import com.zebra.rfid.api3.TriggerInfo;
-
+import java.io.File;
 import java.lang.reflect.Field;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
-import io.flutter.plugin.common.EventChannel.StreamHandler;
-import io.flutter.plugin.common.EventChannel.EventSink;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
 
-public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEventsListener {
+public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, ZebraReader.Listener {
 
     private static final Interfaces INTERFACE = Interfaces.rfidapi3;
 
-    private Handler handler;
     private Context context;
-    private EventSink sink = null;
-    private RFIDReader reader;
+    private final ZebraEventQueue events;
+    private final ZebraReader reader;
     private boolean isDWRegistered = false;
     private Modes mode = Modes.mixed;
 
-    // holds a list of tags read
-    private HashMap<String, TagInfo> tags = new HashMap<>();
+    // holds the tags read
+    private final ZebraTagStore tags;
 
-    // holds a list of epc's to track
-    private ArrayList<String> tracking = new ArrayList<>();
+    // tracking sessions. the session started by track() has no name, and its tags go through the
+    // store as tag reports
+    private final ZebraTracking sessions = new ZebraTracking();
+    private static final String TRACK = "";
 
-    ZebraRfid(Context context, EventSink sink) {
+    // true while scanning rather than only tracking
+    private volatile boolean scanning = false;
 
-        this.context = context;
-        this.sink = sink;
-        handler = new Handler(Looper.getMainLooper());
+    // the stop condition the reader ends the scan on. null when the scan runs until stopped
+    private ZebraReader.Stop bounded = null;
 
-        // datawedge is required to read barcodes
-        createProfile();
-        connectDatawedge();
-    }
+    // runs the scan in duty cycled windows. null when the scan reads continuously
+    private volatile ZebraDutyCycle cycle = null;
 
-    public static boolean isSupported(Context context) {
+    // read statistics included in tag reports
+    private HashSet<Statistics> statistics = new HashSet<>();
 
-        try {
-            Readers readers = new Readers(context, ENUM_TRANSPORT.ALL);
-            if (readers.GetAvailableRFIDReaderList().size() > 0) return true;
-        }
-        catch(Exception e) {
-            Log.d(Zebra123.getTagName(context), "Reader does not support RFID");
-        }
-        return false;
-    }
+    // per product (gtin) counts. null when not aggregating
+    private volatile ZebraGtin aggregator = null;
 
-    private synchronized void ConfigureReader() {
-        if (isReaderConnected()) {
+    // minimum ms between gtin count reports while aggregating
+    private int aggregateInterval = 500;
 
-            try {
+    // unique tag count sketches. null when not estimating
+    private volatile ZebraCardinality cardinality = null;
 
-                Log.d(Zebra123.getTagName(context), "ConfigureReader()");
+    // strongest tags. null when not tracking the nearest tags
+    private volatile ZebraNearest nearest = null;
 
-                // receive events from reader
-                setEvents();
+    // minimum ms between nearest tag updates
+    private int nearestInterval = 250;
 
-                // set mixed mode as default
-                setMode(mode);
+    // expected epc's to reconcile reads against. null when no manifest is loaded
+    private volatile ZebraManifest manifest = null;
 
-                // set start and stop triggers
-                setTriggers(START_TRIGGER_TYPE.START_TRIGGER_TYPE_IMMEDIATE, STOP_TRIGGER_TYPE.STOP_TRIGGER_TYPE_IMMEDIATE);
+    // runs the stops the read path and the reader trigger, off the reader's thread
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
 
-                // power levels are index based so maximum power supported get the last one
-                int powerLevel =  reader.ReaderCapabilities.getTransmitPowerLevelValues().length - 1;
-                setPowerLevel(powerLevel);
+    // minimum ms between manifest progress reports
+    private int manifestInterval = 500;
 
-                reader.Config.setBeeperVolume(BEEPER_VOLUME.HIGH_BEEP);
+    private final ZebraMetrics metrics = ZebraMetrics.shared;
+    private final ZebraTrace trace = ZebraTrace.shared;
 
-                // Set the singulation control
-                setAntennaConfig();
+    // us the oldest read not yet reported was stored. 0 when there is none
+    private final AtomicLong oldest = new AtomicLong();
 
-                // delete any prefilters
-                reader.Actions.PreFilters.deleteAll();
+    // records the raw reads, barcodes and reader events. null when not recording
+    private volatile ZebraRecorder recorder = null;
 
-            } catch (Exception e) {
-                Log.e(Zebra123.getTagName(context), "Error configuring reader. Error: " + e.getMessage());
-            }
+    // tag records shared with dart. null when tags are passed as maps
+    private ZebraRing ring = null;
+
+    // tag reports are numbered within a stream so flutter can detect a lost report
+    private final long stream = System.currentTimeMillis();
+    private long sequence = 0;
+
+    // leave tags whose antenna and rssi are unchanged out of reports
+    private boolean delta = false;
+
+    // rejects raw reads before they reach the store. null when not filtering
+    private volatile ZebraFilter filter = null;
+
+    // debounces the handheld trigger and runs its starts and stops in order
+    private final ZebraTrigger trigger = new ZebraTrigger(new ZebraTrigger.Actions() {
+        @Override
+        public void start() {
+            startScanning();
         }
+
+        @Override
+        public void stop() {
+            stopScanning();
+        }
+    });
+
+    ZebraRfid(Context context, ZebraEventQueue events) {
+        this(context, events, new ZebraApi3Reader(context));
+    }
+
+    ZebraRfid(Context context, ZebraEventQueue events, ZebraReader reader) {
+
+        this.context = context;
+        this.events = events;
+        this.reader = reader;
+        this.reader.setListener(this);
+        this.events.setCreditListener(this::reportTags);
+        tags = new ZebraTagStore(new File(context.getCacheDir(), "zebra123"));
+
+        // datawedge is required to read barcodes
+        createProfile();
+        connectDatawedge();
+    }
+
+    public static boolean isSupported(Context context) {
+        return ZebraApi3Reader.isSupported(context);
     }
 
     public void createProfile(){
@@ -187,119 +195,10 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
         return Zebra123.getPackageName(context) + ".ACTION";
     }
 
-    private String getServiceActionName(Context context) {
-        return Zebra123.getPackageName(context) + "service.ACTION";
-    }
-
-    private void setRegulatoryConfig() {
-
-        try {
-            if (reader != null) {
-                Log.e(Zebra123.getTagName(context),"Setting region");
-
-                // Get and Set regulatory configuration settings
-                RegulatoryConfig regulatoryConfig = reader.Config.getRegulatoryConfig();
-                RegionInfo regionInfo = reader.ReaderCapabilities.SupportedRegions.getRegionInfo(1);
-                regulatoryConfig.setRegion(regionInfo.getRegionCode());
-                regulatoryConfig.setIsHoppingOn(regionInfo.isHoppingConfigurable());
-                regulatoryConfig.setEnabledChannels(regionInfo.getSupportedChannels());
-                reader.Config.setRegulatoryConfig(regulatoryConfig);
-            }
-        }
-        catch(Exception e) {
-            Log.e(Zebra123.getTagName(context), "Error setting region. Error: " + e.getMessage());
-        }
-    }
-
-    public void setPowerLevel(int level) {
-        try
-        {
-            if (reader != null) {
-                Antennas.AntennaRfConfig config = reader.Config.Antennas.getAntennaRfConfig(1);
-                config.setTransmitPowerIndex(level);
-                config.setrfModeTableIndex(0);
-                config.setTari(0);
-                reader.Config.Antennas.setAntennaRfConfig(1, config);
-            }
-        }
-        catch (Exception e) {
-            Log.e(Zebra123.getTagName(context), "Error setting power level. Error: " + e.getMessage());
-        }
-    }
-
-    public void setEvents() {
-        try {
-            if (reader != null) {
-                reader.Events.addEventsListener(this);
-                reader.Events.setHandheldEvent(true);
-                reader.Events.setTagReadEvent(true);
-                reader.Events.setAttachTagDataWithReadEvent(true);
-
-                // this will make the led's flash when a tag is read and while the trigger is held down
-                reader.Config.setUniqueTagReport(false);
-            }
-        }
-        catch (Exception e) {
-            Log.e(Zebra123.getTagName(context), "Error in setEvents(). Error: " + e.getMessage());
-        }
-    }
-
-    private void setMode(ENUM_TRIGGER_MODE mode) {
-        try {
-            if (reader != null) {
-                reader.Config.setTriggerMode(mode, true);
-            }
-        }
-        catch (Exception e) {
-            Log.e(Zebra123.getTagName(context),e.getMessage());
-        }
-    }
-
     @Override
     public void setMode(Modes mode) {
         this.mode = mode;
-        switch (mode) {
-            case barcode:
-                setMode(ENUM_TRIGGER_MODE.BARCODE_MODE);
-                break;
-            case rfid:
-                setMode(ENUM_TRIGGER_MODE.RFID_MODE);
-                break;
-            case mixed:
-                setMode(ENUM_TRIGGER_MODE.BARCODE_MODE);
-                break;
-        }
-    }
-
-    public void setTriggers(START_TRIGGER_TYPE start, STOP_TRIGGER_TYPE stop) {
-        try {
-            if (reader != null) {
-                TriggerInfo triggerInfo = new TriggerInfo();
-                triggerInfo.StartTrigger.setTriggerType(start);
-                triggerInfo.StopTrigger.setTriggerType(stop);
-                reader.Config.setStartTrigger(triggerInfo.StartTrigger);
-                reader.Config.setStopTrigger(triggerInfo.StopTrigger);
-                reader.Config.setBatchMode(BATCH_MODE.ENABLE);
-            }
-        }
-        catch (Exception e) {
-            Log.e(Zebra123.getTagName(context),e.getMessage());
-        }
-    }
-
-    public void setAntennaConfig() {
-        try {
-            if (reader != null) {
-                Antennas.SingulationControl s1_singulationControl = reader.Config.Antennas.getSingulationControl(1);
-                s1_singulationControl.setSession(SESSION.SESSION_S0);
-                s1_singulationControl.Action.setInventoryState(INVENTORY_STATE.INVENTORY_STATE_A);
-                s1_singulationControl.Action.setSLFlag(SL_FLAG.SL_ALL);
-                reader.Config.Antennas.setSingulationControl(1, s1_singulationControl);
-            }
-        }
-        catch (Exception e) {
-            Log.e(Zebra123.getTagName(context),e.getMessage());
-        }
+        reader.setMode(mode);
     }
 
     AsyncTasks connectionTask;
@@ -320,30 +219,7 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
 
                 @Override
                 public void doInBackground() {
-                    try {
-                        if (reader == null) {
-                            Readers readers = new Readers(context,ENUM_TRANSPORT.ALL);
-                            ArrayList<ReaderDevice> rfidReaders = readers.GetAvailableRFIDReaderList();
-                            if (rfidReaders.size() > 0) {
-                                ReaderDevice device = rfidReaders.get(0);
-                                reader = device.getRFIDReader();
-
-                                //setRegulatoryConfig();
-                            }
-                            else {
-                                Log.e(Zebra123.getTagName(context),"No connectable rfid devices found");
-                            }
-                        }
-
-                        if (reader != null) {
-                            reader.connect();
-                            ConfigureReader();
-                        }
-                    }
-                    catch (Exception e)
-                    {
-                        Log.d(Zebra123.getTagName(context), e.toString());
-                    }
+                    if (reader.connect()) reader.setMode(mode);
                 }
 
                 @Override
@@ -413,8 +289,10 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
         try {
             Log.i(Zebra123.getTagName(context),"Disconnecting from RFID reader");
 
-            if (reader != null) reader.Events.removeEventsListener(this);
-            //reader = null;
+            // close the recording
+            record(Requests.stop, null);
+
+            reader.disconnect();
 
             HashMap<String, Object> map =new HashMap<>();
             map.put("status", ZebraConnectionStatus.disconnected.toString());
@@ -428,10 +306,10 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
     }
 
     @Override
-    public void scan(Requests request) {
+    public void scan(Requests request, ZebraReader.Stop stop) {
 
         if (request == Requests.start) {
-            startScanning();
+            startScanning(stop);
         }
         else if (request == Requests.stop) {
             stopScanning();
@@ -449,58 +327,310 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
         }
     }
 
+    @Override
+    public void aggregate(Requests request, int interval) {
+
+        if (request == Requests.start) {
+            startAggregating(interval);
+        }
+        else if (request == Requests.stop) {
+            stopAggregating();
+        }
+    }
+
+    @Override
+    public void manifest(Requests request, ArrayList<String> tags, boolean autoStop, int interval) {
+
+        if (request == Requests.start) {
+            startManifest(tags, autoStop, interval);
+        }
+        else if (request == Requests.stop) {
+            stopManifest();
+        }
+    }
+
+    @Override
+    public synchronized void statistics(ArrayList<Statistics> fields) {
+        statistics = new HashSet<>(fields);
+        statistics.remove(Statistics.unknown);
+    }
+
+    @Override
+    public void nearest(Requests request, int size, int interval) {
+
+        if (request == Requests.start) {
+            startNearest(size, interval);
+        }
+        else if (request == Requests.stop) {
+            stopNearest();
+        }
+    }
+
+    @Override
+    public void estimate(Requests request, boolean perAntenna, int bucket) {
+
+        if (request == Requests.start) {
+            startEstimating(perAntenna, bucket);
+        }
+        else if (request == Requests.stop) {
+            stopEstimating();
+        }
+    }
+
+    @Override
+    public HashMap<String, Object> sketch(byte[] merge) {
+
+        ZebraCardinality sketch = cardinality;
+        if (sketch == null) return null;
+
+        if (merge != null && !sketch.merge(merge)) {
+            Log.e(Zebra123.getTagName(context), "Error merging sketch. Invalid registers");
+        }
+        return sketch.toMap(true);
+    }
+
+    @Override
+    public HashMap<String, Object> budget(long bytes) {
+        if (bytes >= 0) tags.setBudget(bytes);
+        return tags.getBudget();
+    }
+
+    @Override
+    public synchronized HashMap<String, Object> record(Requests request, String file) {
+
+        // stop the current recording
+        HashMap<String, Object> map = null;
+        if (recorder != null) {
+            recorder.close();
+            map = recorder.toMap();
+            recorder = null;
+        }
+
+        if (request == Requests.start) {
+            try {
+                recorder = new ZebraRecorder(Zebra123.getRecordingFile(context, file));
+                map = recorder.toMap();
+            }
+            catch (Exception e) {
+                Log.e(Zebra123.getTagName(context), "Error starting recording. Error: " + e.getMessage());
+                sendEvent(Events.error, ZebraDevice.toError("Error calling record()", e));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public HashMap<String, Object> filter(Requests request, ZebraFilter filter) {
+
+        if (request == Requests.start) this.filter = filter;
+        if (request == Requests.stop) this.filter = null;
+
+        // a tid rule needs the tid bank read with each tag, from the next inventory started
+        if (request == Requests.start || request == Requests.stop) reader.readTid(this.filter != null && this.filter.readsTid());
+
+        // the rules and their hit counts
+        ZebraFilter current = this.filter;
+        return current != null ? current.toMap() : new HashMap<String, Object>();
+    }
+
+    @Override
+    public HashMap<String, Object> session(Requests request, String name, ArrayList<String> tags, Notifies notify) {
+
+        if (name == null || name.length() == 0) return null;
+
+        if (request == Requests.start) return startSession(name, tags, notify);
+        if (request == Requests.stop) return stopSession(name);
+        return toSessions();
+    }
+
+    @Override
+    public HashMap<String, Object> trigger(int debounce, int minimum) {
+        trigger.configure(debounce, minimum);
+        return trigger.toMap();
+    }
+
+    @Override
+    public HashMap<String, Object> cycle(Requests request, int period, int duty, int minimum, int warm, int hot, int battery) {
+
+        if (request == Requests.start) startCycling(period, duty, minimum, warm, hot, battery);
+        if (request == Requests.stop) return stopCycling();
+
+        ZebraDutyCycle cycle = this.cycle;
+        return cycle != null ? cycle.toMap() : new HashMap<String, Object>();
+    }
+
+    @Override
+    public synchronized void delta(boolean enabled) {
+        delta = enabled;
+    }
+
+    @Override
+    public synchronized HashMap<String, Object> transport(Requests request, int capacity) {
+
+        // release the current ring
+        if (ring != null) ring.close();
+        ring = null;
+
+        if (request == Requests.start) {
+            try {
+                ring = new ZebraRing(new File(context.getCacheDir(), "zebra123.ring"), capacity > 0 ? capacity : 8192);
+                return ring.toMap();
+            }
+            catch (Exception e) {
+                Log.e(Zebra123.getTagName(context), "Error starting shared transport. Error: " + e.getMessage());
+                sendEvent(Events.error, ZebraDevice.toError("Error calling transport()", e));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> query(Queries query, int offset, int limit, Sorts sort, String prefix) {
+
+        HashMap<String, Object> map = new HashMap<>();
+        ArrayList<TagInfo> list = null;
+
+        switch (query) {
+            case page:
+                list = tags.page(offset, limit, sort);
+                break;
+            case prefix:
+                list = tags.prefix(prefix, limit);
+                break;
+            case top:
+                list = tags.top(limit);
+                break;
+            case clear:
+                tags.clear();
+                break;
+            default:
+                break;
+        }
+
+        map.put("total", tags.size());
+        if (list != null) map.put("tags", ZebraTagStore.toMaps(list, statistics));
+        return map;
+    }
+
     @Override
     public void dispose() {
-        context.unregisterReceiver(this);
+        trigger.dispose();
+        background.shutdownNow();
+        endCycle();
+        disconnectDatawedge();
+        transport(Requests.stop, 0);
     }
 
     private boolean isReaderConnected() {
-        if (reader != null && reader.isConnected())
-            return true;
-        else {
-            if (reader == null)
-                 Log.d(Zebra123.getTagName(context), "Reader is null");
-            else Log.d(Zebra123.getTagName(context), "Reader is not connected");
-            return false;
-        }
+        return reader.isConnected();
     }
 
     @Override
-    public void eventReadNotify(RfidReadEvents event) {
+    public void onRead(TagInfo data) {
+
+        long started = ZebraTrace.now();
+        ZebraTrace.begin(ZebraTrace.Stages.read);
 
         try {
-            TagData tag = event.getReadEventData().tagData;
-            if(tag.getOpCode() == null || tag.getOpCode()== ACCESS_OPERATION_CODE.ACCESS_OPERATION_READ) {
-
-                TagInfo data = new TagInfo();
-                data.epc = tag.getTagID();
-                data.antenna = tag.getAntennaID();
-                data.rssi = tag.getPeakRSSI();
-                data.status = tag.getOpStatus();
-                data.size = tag.getTagIDAllocatedSize();
-                data.lockData = tag.getPermaLockData();
-                if (tag.isContainsLocationInfo()) {
-                    data.distance = tag.LocationInfo.getRelativeDistance();
+            metrics.reads.mark();
+
+            // the first read since the trigger was pressed
+            trigger.read(started);
+
+            // record the raw read
+            ZebraRecorder recorder = this.recorder;
+            if (recorder != null) recorder.read(data);
+
+            // rejected reads go no further
+            ZebraFilter filter = this.filter;
+            if (filter != null && !filter.accepts(data, System.currentTimeMillis())) {
+                metrics.filtered.mark();
+                return;
+            }
+
+            data.begin();
+
+            // the modes are read once, as they are stopped under the lock while the reader reads
+            ZebraNearest nearest = this.nearest;
+            ZebraManifest manifest = this.manifest;
+            ZebraGtin aggregator = this.aggregator;
+            ZebraCardinality cardinality = this.cardinality;
+
+            // update the nearest tags
+            if (nearest != null) {
+                long now = System.currentTimeMillis();
+                nearest.add(data.epc, data.rssi, now);
+                if (nearest.due(now, nearestInterval)) reportNearest();
+            }
+
+            // reconcile against the manifest
+            if (manifest != null && manifest.add(data.epc)) {
+
+                // the manifest hands out its auto stop once, however many reads follow
+                if (manifest.stop()) {
+                    Log.d(Zebra123.getTagName(context), "MANIFEST COMPLETE");
+                    background.execute(() -> {
+                        synchronized (ZebraRfid.this) {
+                            if (this.manifest != manifest) return;
+                            stopScanning();
+                            stopManifest();
+                        }
+                    });
                 }
-                data.memoryBankData = tag.getMemoryBankData();
-
-                // tracking enabled?
-                if (tracking.size() > 0) {
-                    if (tracking.contains(data.epc)) {
-                        boolean notify = true;
-                        if (tags.containsKey(data.epc) && tags.get(data.epc).rssi == data.rssi) notify = false;
-                        tags.put(data.epc, data);
-                        if (notify) reportTags();
-                    }
+                else if (manifest.due(System.currentTimeMillis(), manifestInterval)) reportManifest(false);
+            }
+
+            // the sessions tracking the tag
+            ZebraTracking.Session[] matched = sessions.match(data.epc);
+            boolean tracked = false;
+            if (matched != null) {
+                for (ZebraTracking.Session session : matched) if (session.name.equals(TRACK)) tracked = true;
+            }
+
+            // counting modes do not store the tags
+            if ((aggregator != null || cardinality != null) && !sessions.contains(TRACK)) {
+
+                // aggregating?
+                if (aggregator != null) {
+                    if (aggregator.add(data.epc, data.antenna)) metrics.unique.mark();
+                    if (aggregator.due(System.currentTimeMillis(), aggregateInterval)) reportGtins();
                 }
-                else {
-                    tags.put(data.epc, data);
+
+                // estimating?
+                if (cardinality != null) cardinality.add(data.epc, data.antenna, System.currentTimeMillis());
+            }
+
+            // tracking enabled?
+            else if (sessions.contains(TRACK)) {
+                if (tracked) {
+                    TagInfo previous = tags.put(data);
+                    oldest.compareAndSet(0, started);
+                    if (previous == null) metrics.unique.mark();
+                    boolean notify = previous == null || previous.rssi != data.rssi;
+                    if (notify) reportTags();
+                }
+            }
+            // reads only named sessions asked for are not stored
+            else if (scanning || sessions.size() == 0) {
+                // a tag spilled to disk counts again when it is read back into memory
+                if (tags.put(data) == null) metrics.unique.mark();
+                oldest.compareAndSet(0, started);
+            }
+
+            // notify the named sessions tracking the tag
+            if (matched != null) {
+                for (ZebraTracking.Session session : matched) {
+                    if (!session.name.equals(TRACK) && session.notify(data)) reportSession(session, data);
                 }
             }
         }
         catch (Exception e) {
             Log.e(Zebra123.getTagName(context), "Error reading tag data. Error is " + e.toString());
         }
+        finally {
+            ZebraTrace.end();
+            trace.record(ZebraTrace.Stages.read, started, ZebraTrace.now());
+        }
     }
 
     @Override
@@ -511,20 +641,7 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
             try {
                 String barcode = intent.getStringExtra("com.symbol.datawedge.data_string");
                 String format  = intent.getStringExtra("com.symbol.datawedge.label_type");
-                long   seen    = System.currentTimeMillis();
-                String date    = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss.SSS").format(new Date(seen)).toString();
-
-                // create a map of simple objects
-                HashMap<String, Object> tag = new HashMap<>();
-                tag.put("barcode", barcode);
-                tag.put("format", format);
-                tag.put("seen", date);
-
-                // notify listener
-                Log.d(Zebra123.getTagName(context), Events.readBarcode + ": " + tag);
-
-                // only send if mixed or barcode mode
-                if (mode == Modes.mixed || mode == Modes.barcode) sendEvent(Events.readBarcode, tag);
+                onBarcode(barcode, format);
             }
             catch(Exception e) {
                 Log.e(Zebra123.getTagName(context), "Error deserializing json object" + e.getMessage());
@@ -534,106 +651,434 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
     }
 
     @Override
-    public void eventStatusNotify(RfidStatusEvents event) {
+    public void onBarcode(String barcode, String format) {
 
-        Log.d(Zebra123.getTagName(context), "eventStatusNotify()");
+        metrics.barcodes.mark();
 
-        STATUS_EVENT_TYPE eventType = event.StatusEventData.getStatusEventType();
+        // record the raw barcode
+        ZebraRecorder recorder = this.recorder;
+        if (recorder != null) recorder.barcode(barcode, format);
 
-        if (eventType == STATUS_EVENT_TYPE.HANDHELD_TRIGGER_EVENT) {
+        long   seen    = System.currentTimeMillis();
+        String date    = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss.SSS").format(new Date(seen)).toString();
 
-            // get the trigger event
-            HANDHELD_TRIGGER_EVENT_TYPE triggerEvent = event.StatusEventData.HandheldTriggerEventData.getHandheldEvent();
+        // create a map of simple objects
+        HashMap<String, Object> tag = new HashMap<>();
+        tag.put("barcode", barcode);
+        tag.put("format", format);
+        tag.put("seen", date);
 
-            // trigger down?
-            if (triggerEvent == HANDHELD_TRIGGER_EVENT_TYPE.HANDHELD_TRIGGER_PRESSED)
-            {
-                Log.d(Zebra123.getTagName(context), "TRIGGER DOWN");
+        // notify listener
+        Log.d(Zebra123.getTagName(context), Events.readBarcode + ": " + tag);
 
-                new AsyncTasks() {
+        // only send if mixed or barcode mode
+        if (mode == Modes.mixed || mode == Modes.barcode) sendEvent(Events.readBarcode, tag);
+    }
 
-                    @Override
-                    public void onPreExecute() {
-                        // before execution
-                    }
+    @Override
+    public void onTrigger(boolean pressed) {
 
-                    @Override
-                    public void doInBackground() {
-                        startScanning();
-                    }
+        // record the trigger pull
+        ZebraRecorder recorder = this.recorder;
+        if (recorder != null) recorder.trigger(pressed);
 
-                    @Override
-                    public void onPostExecute() {
-                        // Ui task here
-                    }
+        // presses and releases are debounced into runs
+        if (pressed) trigger.press();
+        else trigger.release();
+    }
 
-                }.execute();
+    @Override
+    public void onInventoryStop() {
+
+        // the reader ended a bounded scan. report its tags without waiting on a stop from flutter
+        background.execute(() -> {
+            synchronized (ZebraRfid.this) {
+                if (scanning && bounded != null) stopScanning(true);
             }
+        });
+    }
 
-            // trigger up?
-            else if (triggerEvent == HANDHELD_TRIGGER_EVENT_TYPE.HANDHELD_TRIGGER_RELEASED) {
+    @Override
+    public void onBattery(int level, boolean charging) {
+        ZebraDutyCycle cycle = this.cycle;
+        if (cycle != null) cycle.battery(level, charging);
+    }
 
-                Log.d(Zebra123.getTagName(context), "TRIGGER UP");
+    @Override
+    public void onTemperature(int temperature) {
+        ZebraDutyCycle cycle = this.cycle;
+        if (cycle != null) cycle.temperature(temperature);
+    }
 
-                new AsyncTasks() {
+    @Override
+    public void onDisconnect() {
 
-                    @Override
-                    public void onPreExecute() {
-                        // before execution
-                    }
+        // record the disconnect
+        ZebraRecorder recorder = this.recorder;
+        if (recorder != null) recorder.disconnect();
 
-                    @Override
-                    public void doInBackground() {
-                        stopScanning();
-                    }
+        // the scan ended with the connection
+        trigger.stopped();
 
-                    @Override
-                    public void onPostExecute() {
-                        // Ui task here
-                    }
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("status", ZebraConnectionStatus.disconnected.toString());
 
-                }.execute();
-            }
-        }
+        // notify device
+        sendEvent(Events.connectionStatus,map);
     }
 
     synchronized void reportTags() {
+
+        long started = ZebraTrace.now();
+        ZebraTrace.begin(ZebraTrace.Stages.flush);
+
         try
         {
-            if (tags.size() > 0) {
+            // hold the tags in the store while flutter has no credit for another report
+            if (!events.acquire()) {
+                overflow();
+                return;
+            }
 
-                ArrayList<HashMap<String, Object>> data = new ArrayList<>();
-                for (TagInfo tag : tags.values())
-                    data.add(transitionEntity(tag));
-                tags.clear();
+            ArrayList<TagInfo> list = tags.drain();
+            long first = oldest.getAndSet(0);
+
+            // only tags that are new or changed since they were last reported
+            if (delta) {
+                ArrayList<TagInfo> changed = new ArrayList<>();
+                for (TagInfo tag : list) if (tag.changed()) changed.add(tag);
+                list = changed;
+            }
+            for (TagInfo tag : list) tag.reported();
+
+            if (list.size() == 0) events.release();
+            if (list.size() > 0) {
+
+                metrics.batch.record(list.size());
+                if (first > 0) trace.record(ZebraTrace.Stages.store, first, started);
 
                 HashMap<String,Object> hashMap=new HashMap<>();
+
+                // pass the tags that fit a record through the shared ring. the rest go as maps
+                if (ring != null) {
+                    long from = ring.head();
+                    list = ring.write(list, statistics);
+
+                    ArrayList<String> fields = new ArrayList<>();
+                    for (Statistics statistic : statistics) fields.add(statistic.toString());
+
+                    HashMap<String,Object> range = new HashMap<>();
+                    range.put("from", from);
+                    range.put("to", ring.head());
+                    range.put("statistics", fields);
+                    hashMap.put("ring",range);
+                }
+
+                ArrayList<HashMap<String, Object>> data = ZebraTagStore.toMaps(list, statistics);
+
+                // stamps used to measure the latency of the report
+                HashMap<String,Object> stamps = new HashMap<>();
+                stamps.put("read", first > 0 ? first : started);
+                stamps.put("flush", started);
+
                 hashMap.put("tags",data);
+                hashMap.put("trace",stamps);
 
                 // notify listener
-                if (mode == Modes.rfid || mode == Modes.mixed) sendEvent(Events.readRfid,hashMap);
+                if (mode == Modes.rfid || mode == Modes.mixed) {
+                    number(hashMap);
+                    sendEvent(Events.readRfid,hashMap);
+                }
+                trace.record(ZebraTrace.Stages.flush, started, ZebraTrace.now());
             }
         }
         catch (Exception e) {
             Log.e(Zebra123.getTagName(context), "Error in reportTags()");
         }
+        finally {
+            ZebraTrace.end();
+        }
+    }
+
+    // sends a snapshot of every tag in the store to the engine that lost reports. the reports sent
+    // to every engine carry on from the snapshot, so the other engines' streams are left as they are.
+    // tags not yet reported are in the snapshot and in the next report
+    @Override
+    public synchronized void resync(Target target) {
+
+        try
+        {
+            ArrayList<TagInfo> list = tags.page(0, 0, Sorts.lastSeen);
+
+            HashMap<String,Object> hashMap=new HashMap<>();
+            hashMap.put("tags",ZebraTagStore.toMaps(list, statistics));
+
+            // the next report follows on from the snapshot
+            hashMap.put("stream", stream);
+            hashMap.put("sequence", sequence);
+
+            // notify the engine
+            if (mode == Modes.rfid || mode == Modes.mixed) events.send(target, INTERFACE, Events.rfidSnapshot, hashMap);
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error in resync()");
+        }
+    }
+
+    // numbers the report within the stream. a report merged with later ones keeps its first number
+    private void number(HashMap<String,Object> map) {
+        sequence++;
+        map.put("stream", stream);
+        map.put("first", sequence);
+        map.put("sequence", sequence);
+    }
+
+    // applies the overflow policy to the tags held back for lack of credit
+    private void overflow() {
+
+        int limit = events.getLimit();
+        if (limit <= 0) return;
+
+        switch (events.getOverflow()) {
+
+            // the oldest held back tags are not reported
+            case dropOldest:
+                metrics.overflowed.mark(tags.dropPending(limit));
+                break;
+
+            // the oldest held back tags wait on disk
+            case spill:
+                metrics.overflowed.mark(tags.spillPending(limit));
+                break;
+
+            // held back tags keep merging in the store
+            default:
+                break;
+        }
+    }
+
+    // reports a read to a named session
+    private void reportSession(ZebraTracking.Session session, TagInfo tag) {
+
+        if (mode != Modes.rfid && mode != Modes.mixed) return;
+
+        ArrayList<HashMap<String, Object>> list = new ArrayList<>();
+        list.add(tag.toMap(statistics));
+
+        HashMap<String,Object> hashMap=new HashMap<>();
+        hashMap.put("session", session.name);
+        hashMap.put("tags", list);
+
+        // notify listener
+        sendEvent(Events.trackedTags,hashMap);
+    }
+
+    // starts and stops named tracking sessions. the sessions share one inventory run, which runs
+    // while any session or scan does
+    synchronized HashMap<String, Object> startSession(String name, ArrayList<String> tags, Notifies notify) {
+
+        try
+        {
+            if (mode == Modes.barcode) return null;
+
+            boolean running = scanning || sessions.size() > 0;
+            sessions.start(name, tags, notify);
+
+            if (!running && isReaderConnected()) {
+                Log.d(Zebra123.getTagName(context), "STARTING SESSION " + name);
+                reader.startInventory();
+            }
+        }
+        catch (Exception e)
+        {
+            Log.e(Zebra123.getTagName(context), "Error in startSession()");
+            stopSession(name);
+        }
+        return toSessions();
+    }
+
+    synchronized HashMap<String, Object> stopSession(String name) {
+
+        try
+        {
+            if (sessions.stop(name) && sessions.size() == 0 && !scanning && isReaderConnected()) {
+                Log.d(Zebra123.getTagName(context), "STOPPING SESSION " + name);
+                reader.stopInventory();
+            }
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error in stopSession()");
+        }
+        return toSessions();
+    }
+
+    private HashMap<String, Object> toSessions() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("sessions", sessions.toMaps());
+        return map;
+    }
+
+    synchronized void reportGtins() {
+        try
+        {
+            if (aggregator == null) return;
+
+            ArrayList<HashMap<String, Object>> data = aggregator.flush(System.currentTimeMillis());
+            if (data.size() > 0) {
+
+                HashMap<String,Object> hashMap=new HashMap<>();
+                hashMap.put("gtins",data);
+                hashMap.put("total",aggregator.size());
+
+                // notify listener
+                if (mode == Modes.rfid || mode == Modes.mixed) sendEvent(Events.readGtin,hashMap);
+            }
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error in reportGtins()");
+        }
+    }
+
+    synchronized void startAggregating(int interval) {
+
+        Log.d(Zebra123.getTagName(context), "STARTING AGGREGATION");
+
+        if (interval > 0) aggregateInterval = interval;
+        aggregator = new ZebraGtin();
+    }
+
+    synchronized void stopAggregating() {
+
+        Log.d(Zebra123.getTagName(context), "STOPPING AGGREGATION");
+
+        // report outstanding counts
+        reportGtins();
+        aggregator = null;
+    }
+
+    synchronized void reportEstimate() {
+        try
+        {
+            if (cardinality == null) return;
+
+            HashMap<String,Object> hashMap = cardinality.toMap(false);
+
+            // notify listener
+            if (mode == Modes.rfid || mode == Modes.mixed) sendEvent(Events.estimate,hashMap);
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error in reportEstimate()");
+        }
+    }
+
+    synchronized void startEstimating(boolean perAntenna, int bucket) {
+
+        Log.d(Zebra123.getTagName(context), "STARTING ESTIMATION");
+
+        cardinality = new ZebraCardinality(perAntenna, bucket);
+    }
+
+    synchronized void stopEstimating() {
+
+        Log.d(Zebra123.getTagName(context), "STOPPING ESTIMATION");
+
+        // report the final estimate
+        reportEstimate();
+        cardinality = null;
+    }
+
+    synchronized void reportNearest() {
+        try
+        {
+            if (nearest == null) return;
+
+            HashMap<String,Object> hashMap=new HashMap<>();
+            hashMap.put("tags",nearest.flush(System.currentTimeMillis()));
+
+            // notify listener
+            if (mode == Modes.rfid || mode == Modes.mixed) sendEvent(Events.nearestTags,hashMap);
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error in reportNearest()");
+        }
+    }
+
+    synchronized void startNearest(int size, int interval) {
+
+        Log.d(Zebra123.getTagName(context), "STARTING NEAREST " + size + " TAGS");
+
+        if (interval > 0) nearestInterval = interval;
+        nearest = new ZebraNearest(size > 0 ? size : 5);
+    }
+
+    synchronized void stopNearest() {
+
+        Log.d(Zebra123.getTagName(context), "STOPPING NEAREST TAGS");
+
+        nearest = null;
+    }
+
+    synchronized void reportManifest(boolean last) {
+        try
+        {
+            if (manifest == null) return;
+            if (!last && !manifest.due(System.currentTimeMillis(), 0)) return;
+
+            HashMap<String,Object> hashMap = manifest.progress(System.currentTimeMillis(), last);
+
+            // notify listener
+            if (mode == Modes.rfid || mode == Modes.mixed) sendEvent(Events.manifestProgress,hashMap);
+        }
+        catch (Exception e) {
+            Log.e(Zebra123.getTagName(context), "Error in reportManifest()");
+        }
+    }
+
+    synchronized void startManifest(ArrayList<String> tags, boolean autoStop, int interval) {
+
+        Log.d(Zebra123.getTagName(context), "LOADING MANIFEST OF " + tags.size() + " TAGS");
+
+        if (interval > 0) manifestInterval = interval;
+        manifest = new ZebraManifest(tags, autoStop);
+    }
+
+    synchronized void stopManifest() {
+
+        if (manifest == null) return;
+
+        Log.d(Zebra123.getTagName(context), "UNLOADING MANIFEST");
+
+        // report the final reconciliation
+        reportManifest(true);
+        manifest = null;
     }
 
     synchronized void startScanning() {
+        startScanning(null);
+    }
+
+    synchronized void startScanning(ZebraReader.Stop stop) {
 
         try
         {
+            // a scan replaces a duty cycled scan
+            endCycle();
+
             // clear tracking filter
-            tracking.clear();
+            sessions.stop(TRACK);
 
-            if (reader != null)
+            // clear the tags from the previous inventory
+            tags.clear();
+
+            if (isReaderConnected())
             {
                 if (mode == Modes.mixed || mode == Modes.rfid)
                 {
                     Log.d(Zebra123.getTagName(context), "START SCANNNING");
 
-                    reader.Actions.Inventory.stop();
-                    reader.Actions.Inventory.perform();
+                    scanning = true;
+                    bounded = stop;
+                    reader.startInventory(stop);
                 }
 
                 if (mode == Modes.mixed || mode == Modes.barcode)
@@ -659,68 +1104,181 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
     }
 
     synchronized void stopScanning() {
+        stopScanning(false);
+    }
+
+    // ended is true when the reader ended a bounded scan itself, so only the tags are reported
+    synchronized void stopScanning(boolean ended) {
+
+        endCycle();
+
+        // however the scan stopped, the next trigger press starts another
+        trigger.stopped();
+
+        // already stopped. barcode scans aren't tracked, so are always stopped
+        if (!scanning && mode != Modes.barcode) return;
 
         // check reader connection
         if (!isReaderConnected()) return;
 
         try
         {
-            if (reader != null)
+            if (mode == Modes.mixed || mode == Modes.rfid)
             {
-                if (mode == Modes.mixed || mode == Modes.rfid)
-                {
-                    Log.d(Zebra123.getTagName(context), "STOP SCANNING. Found " + tags.size() + " tags");
+                Log.d(Zebra123.getTagName(context), "STOP SCANNING. Found " + tags.size() + " tags");
 
-                    // notify listener
-                    sendEvent(Events.stopRead,new HashMap<>());
+                // notify listener. a scan the reader ended carries its stop condition
+                HashMap<String, Object> map = new HashMap<>();
+                if (ended && bounded != null) map.put("stop", bounded.toMap());
+                map.put("total", tags.size());
+                sendEvent(Events.stopRead, map);
 
-                    // stop the reader
-                    reader.Actions.Inventory.stop();
-                }
+                // stop the reader unless named sessions are tracking
+                scanning = false;
+                if (!ended && sessions.size() == 0) reader.stopInventory();
 
-                if (mode == Modes.mixed || mode == Modes.barcode)
-                {
-                    Log.d(Zebra123.getTagName(context), "STOP READING");
+                // named sessions keep reading once the bounded scan has ended
+                if ((ended || bounded != null) && sessions.size() > 0) reader.startInventory();
+                bounded = null;
+            }
 
-                    // set the scanner to start scanning
-                    String parameter = "STOP_SCANNING";
-                    String command   = "com.symbol.datawedge.api.SOFT_SCAN_TRIGGER";
-                    ZebraDataWedge.send(context, command, parameter);
-                }
+            if (mode == Modes.mixed || mode == Modes.barcode)
+            {
+                Log.d(Zebra123.getTagName(context), "STOP READING");
 
-                // report tags
-                reportTags();
+                // set the scanner to start scanning
+                String parameter = "STOP_SCANNING";
+                String command   = "com.symbol.datawedge.api.SOFT_SCAN_TRIGGER";
+                ZebraDataWedge.send(context, command, parameter);
             }
+
+            // report tags
+            reportTags();
+            reportGtins();
+            reportEstimate();
+            reportManifest(false);
         }
         catch (Exception e) {
             Log.e(Zebra123.getTagName(context), "Error in stopInventory()");
         }
     }
 
+    // scans in duty cycled windows. tags are reported at the end of each window, and the reader status
+    // read while it is idle adapts the duty of the next windows
+    synchronized void startCycling(int period, int duty, int minimum, int warm, int hot, int battery) {
+
+        try
+        {
+            if (!isReaderConnected() || mode == Modes.barcode) return;
+
+            endCycle();
+
+            // clear tracking filter
+            sessions.stop(TRACK);
+
+            // clear the tags from the previous inventory
+            tags.clear();
+
+            Log.d(Zebra123.getTagName(context), "START CYCLING");
+
+            scanning = true;
+            bounded = null;
+            cycle = new ZebraDutyCycle(period, duty, minimum, warm, hot, battery, new ZebraDutyCycle.Actions() {
+                @Override
+                public void on() {
+                    startWindow();
+                }
+
+                @Override
+                public void off() {
+                    stopWindow();
+                }
+
+                @Override
+                public void status() {
+                    reader.requestStatus();
+                }
+            });
+            cycle.start();
+
+            // notify listener
+            sendEvent(Events.startRead,new HashMap<>());
+        }
+        catch (Exception e)
+        {
+            Log.e(Zebra123.getTagName(context), "Error in startCycling()");
+        }
+    }
+
+    // stops the duty cycled scan and reports its tags. returns the final duty cycle statistics
+    synchronized HashMap<String, Object> stopCycling() {
+
+        ZebraDutyCycle cycle = this.cycle;
+        if (cycle == null) return new HashMap<>();
+
+        Log.d(Zebra123.getTagName(context), "STOP CYCLING");
+
+        cycle.dispose();
+        HashMap<String, Object> map = cycle.toMap();
+        stopScanning();
+        return map;
+    }
+
+    private synchronized void endCycle() {
+        if (cycle != null) cycle.dispose();
+        cycle = null;
+    }
+
+    private synchronized void startWindow() {
+        try
+        {
+            if (cycle != null) reader.startInventory();
+        }
+        catch (Exception e)
+        {
+            Log.e(Zebra123.getTagName(context), "Error in startWindow()");
+        }
+    }
+
+    private synchronized void stopWindow() {
+        try
+        {
+            if (cycle == null) return;
+
+            // the reader keeps reading for named sessions
+            if (sessions.size() == 0) reader.stopInventory();
+            reportTags();
+        }
+        catch (Exception e)
+        {
+            Log.e(Zebra123.getTagName(context), "Error in stopWindow()");
+        }
+    }
+
     synchronized void startTracking(ArrayList<String> tags) {
 
         try
         {
             // clear tracking
-            tracking.clear();
+            sessions.stop(TRACK);
+
+            // clear the tags from the previous inventory
+            this.tags.clear();
 
             // barcode only mode enabled?
             if (mode == Modes.barcode) return;
 
-            if (reader != null) {
+            if (isReaderConnected()) {
                 Log.d(Zebra123.getTagName(context), "STARTING TRACKING");
 
                 // notify listener
                 sendEvent(Events.startRead,new HashMap<>());
 
                 // set tracking tags
-                tracking.addAll(tags);
-
-                // stop read
-                reader.Actions.Inventory.stop();
+                sessions.start(TRACK, tags, Notifies.change);
 
                 // start inventory
-                reader.Actions.Inventory.perform();
+                reader.startInventory();
             }
         }
         catch (Exception e)
@@ -733,96 +1291,31 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
     synchronized void stopTracking() {
 
         // clear tracking
-        tracking.clear();
+        sessions.stop(TRACK);
 
         // check reader connection
         if (!isReaderConnected()) return;
 
         try
         {
-            if (reader != null) {
-                Log.d(Zebra123.getTagName(context), "STOPPING TRACKING. Found " + tags.size() + " tags");
+            Log.d(Zebra123.getTagName(context), "STOPPING TRACKING. Found " + tags.size() + " tags");
 
-                // notify listener
-                sendEvent(Events.stopRead,new HashMap<>());
+            // notify listener
+            sendEvent(Events.stopRead,new HashMap<>());
 
-                // stop the reader
-                reader.Actions.Inventory.stop();
-            }
+            // stop the reader unless scanning or named sessions are tracking
+            if (!scanning && sessions.size() == 0) reader.stopInventory();
         }
         catch (Exception e) {
             Log.e(Zebra123.getTagName(context), "Error in stopTracking()");
         }
     }
 
-    // configuration
-    private void setAntennaPower(int power) {
-        Log.d(Zebra123.getTagName(context), "setAntennaPower " + power);
-        try {
-            // set antenna configurations
-            Antennas.AntennaRfConfig config = reader.Config.Antennas.getAntennaRfConfig(1);
-            config.setTransmitPowerIndex(power);
-            config.setrfModeTableIndex(0);
-            config.setTari(0);
-            reader.Config.Antennas.setAntennaRfConfig(1, config);
-        } catch (InvalidUsageException e) {
-            e.printStackTrace();
-        } catch (OperationFailureException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void setSingulation(SESSION session, INVENTORY_STATE state) {
-        Log.d(Zebra123.getTagName(context), "setSingulation " + session);
-        try {
-            // Set the singulation control
-            Antennas.SingulationControl s1_singulationControl = reader.Config.Antennas.getSingulationControl(1);
-            s1_singulationControl.setSession(session);
-            s1_singulationControl.Action.setInventoryState(state);
-            s1_singulationControl.Action.setSLFlag(SL_FLAG.SL_ALL);
-            reader.Config.Antennas.setSingulationControl(1, s1_singulationControl);
-        } catch (InvalidUsageException e) {
-            e.printStackTrace();
-        } catch (OperationFailureException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void setDPO(boolean bEnable) {
-        Log.d(Zebra123.getTagName(context), "setDPO " + bEnable);
-        try {
-            // control the DPO
-            reader.Config.setDPOState(bEnable ? DYNAMIC_POWER_OPTIMIZATION.ENABLE : DYNAMIC_POWER_OPTIMIZATION.DISABLE);
-        } catch (InvalidUsageException e) {
-            e.printStackTrace();
-        } catch (OperationFailureException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void setAccessOperationConfiguration() {
-        // set required power and profile
-        setAntennaPower(240);
-        // in case of RFD8500 disable DPO
-        if (reader.getHostName().contains("RFD8500"))
-            setDPO(false);
-        //
-        try {
-            // set access operation time out value to 1 second, so reader will tries for a second
-            // to perform operation before timing out
-            reader.Config.setAccessOperationWaitTimeout(1000);
-        } catch (InvalidUsageException e) {
-            e.printStackTrace();
-        } catch (OperationFailureException e) {
-            e.printStackTrace();
-        }
-    }
-
     public void write(String epc, String newEpc, String password, String newPassword, String data) {
 
         if (epc == null || epc.trim().equals("")) return;
 
-        setAccessOperationConfiguration();
+        reader.prepareAccess();
 
         // set default password
         if (password == null || password.trim().length() == 0) password = "0";
@@ -831,7 +1324,7 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
 
         // write epc
         if (epc != newEpc && newEpc != null && newEpc.trim().length() > 0) {
-            Exception exception = writeTag(epc, password, MEMORY_BANK.MEMORY_BANK_EPC, newEpc, 2);
+            Exception exception = writeTag(epc, password, ZebraReader.Banks.epc, newEpc, 2);
             if (exception != null) {
                 ok = false;
                 Log.e(Zebra123.getTagName(context), "Error writing tag epc: " + exception.getMessage());
@@ -842,7 +1335,7 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
 
         // write data
         if (data != null && data.length() > 0) {
-            Exception exception = writeTag(epc, password, MEMORY_BANK.MEMORY_BANK_USER, data, 0);
+            Exception exception = writeTag(epc, password, ZebraReader.Banks.user, data, 0);
             if (exception != null) {
                 ok = false;
                 Log.e(Zebra123.getTagName(context), "Error writing tag data: " + exception.getMessage());
@@ -853,7 +1346,7 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
 
         // change password
         if (password != newPassword && newPassword != null && newPassword.trim().length() > 0) {
-            Exception exception = writeTag(epc, password, MEMORY_BANK.MEMORY_BANK_RESERVED, newPassword, 2);
+            Exception exception = writeTag(epc, password, ZebraReader.Banks.reserved, newPassword, 2);
             if (exception != null) {
                 ok = false;
                 Log.e(Zebra123.getTagName(context), "Error writing tag password: " + exception.getMessage());
@@ -874,29 +1367,11 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
     }
 
 
-    private Exception writeTag(String sourceEPC, String Password, MEMORY_BANK memory_bank, String targetData, int offset) {
+    private Exception writeTag(String sourceEPC, String Password, ZebraReader.Banks bank, String targetData, int offset) {
 
         try {
             Log.i(Zebra123.getTagName(context), "Writeing RFID tag");
-
-            TagData tagData = null;
-            String tagId = sourceEPC;
-            TagAccess tagAccess = new TagAccess();
-            TagAccess.WriteAccessParams writeAccessParams = tagAccess.new WriteAccessParams();
-            String writeData = targetData; //write data in string
-            writeAccessParams.setAccessPassword(Long.parseLong(Password,16));
-            writeAccessParams.setMemoryBank(memory_bank);
-            writeAccessParams.setOffset(offset); // start writing from word offset 0
-            writeAccessParams.setWriteData(writeData);
-            // set retries in case of partial write happens
-            writeAccessParams.setWriteRetries(3);
-            // data length in words
-            writeAccessParams.setWriteDataLength(writeData.length() / 4);
-            // 5th parameter bPrefilter flag is true which means API will apply pre filter internally
-            // 6th parameter should be true in case of changing EPC ID it self i.e. source and target both is EPC
-            boolean useTIDfilter = memory_bank == MEMORY_BANK.MEMORY_BANK_EPC;
-            reader.Actions.TagAccess.writeWait(tagId, writeAccessParams, null, tagData, true, useTIDfilter);
-
+            reader.write(sourceEPC, Password, bank, targetData, offset);
             return null;
         }
         catch (Exception e) {
@@ -907,24 +1382,8 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
 
     private void sendEvent(final ZebraDevice.Events event, final HashMap map) {
 
-        if (sink == null) {
-            Log.e(Zebra123.getTagName(context), "Can't send notification to flutter. Sink is null");
-            return;
-        }
-
-        // we need to send this on the main thread
-        handler.post(() -> {
-            try
-            {
-                map.put("eventSource", INTERFACE.toString());
-                map.put("eventName", event.toString());
-                sink.success(map);
-            }
-            catch (Exception e)
-            {
-                Log.e(Zebra123.getTagName(context), "Error sending notification to flutter. Error: " + e.getMessage());
-            }
-        });
+        // delivered on the main thread on the event's channel
+        events.send(INTERFACE, event, map);
     }
 
     //Entity class transfer HashMap
@@ -943,26 +1402,6 @@ public class ZebraRfid extends BroadcastReceiver implements ZebraDevice, RfidEve
         return hashMap;
     }
 
-    private static class TagInfo {
-
-        public String epc;
-        public short antenna;
-        public short rssi;
-        public ACCESS_OPERATION_STATUS status;
-        public short distance;
-        public String memoryBankData;
-        public String lockData;
-        public int size;
-        public String seen;
-        public String password;
-
-        TagInfo() {
-            Date datetime = Calendar.getInstance().getTime();
-            String date   = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss.SSS").format(datetime).toString();
-            this.seen = date;
-        }
-    }
-
     public abstract class AsyncTasks {
 
         private final ExecutorService executors;
@@ -0,0 +1,163 @@
+package dev.fml.zebra123;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import dev.fml.zebra123.ZebraDevice.Statistics;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// ring of fixed size tag records in a memory mapped file. dart maps the same file through ffi and
+// reads the records in place, so a report only carries the range of records written. records are
+// numbered from 0 and record n is in slot n % capacity. dart writes the number of the next record
+// it will read to the tail, and a record is only written once its slot has been read
+public class ZebraRing {
+
+    static final int MAGIC = 0x5A524E47;
+    static final int VERSION = 1;
+
+    // header, little endian
+    static final int HEADER = 64;
+    static final int MAGIC_AT = 0;
+    static final int VERSION_AT = 4;
+    static final int RECORD_AT = 8;
+    static final int CAPACITY_AT = 12;
+    static final int HEAD_AT = 16;
+    static final int TAIL_AT = 24;
+
+    // record, little endian
+    static final int RECORD = 64;
+    static final int EPC_LENGTH_AT = 0;
+    static final int ANTENNA_AT = 2;
+    static final int RSSI_AT = 4;
+    static final int DISTANCE_AT = 6;
+    static final int READS_AT = 8;
+    static final int RSSI_MIN_AT = 12;
+    static final int RSSI_MAX_AT = 14;
+    static final int FIRST_SEEN_AT = 16;
+    static final int LAST_SEEN_AT = 24;
+    static final int RSSI_TOTAL_AT = 32;
+    static final int SIZE_AT = 40;
+    static final int EPC_AT = 44;
+
+    // longest epc in bytes that fits a record
+    static final int MAX_EPC = RECORD - EPC_AT;
+
+    private final File file;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+
+    // number of the next record written
+    private long head = 0;
+
+    ZebraRing(File file, int capacity) throws IOException {
+
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists()) directory.mkdirs();
+
+        this.file = file;
+        this.capacity = Math.max(1, capacity);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(HEADER + (long) this.capacity * RECORD);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+        finally {
+            raf.close();
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC_AT, MAGIC);
+        buffer.putInt(VERSION_AT, VERSION);
+        buffer.putInt(RECORD_AT, RECORD);
+        buffer.putInt(CAPACITY_AT, this.capacity);
+        buffer.putLong(HEAD_AT, 0);
+        buffer.putLong(TAIL_AT, 0);
+    }
+
+    // returns true if the tag can be passed as a record. tags carrying strings other than the epc,
+    // and per antenna counts, are passed as maps
+    static boolean fits(TagInfo tag, HashSet<Statistics> statistics) {
+
+        if (statistics.contains(Statistics.antennas)) return false;
+        if (!isEmpty(tag.status) || !isEmpty(tag.memoryBankData) || !isEmpty(tag.lockData) || !isEmpty(tag.password)) return false;
+
+        int length = tag.epc != null ? tag.epc.length() : 0;
+        if (length == 0 || length % 2 != 0 || length > MAX_EPC * 2) return false;
+        for (int i = 0; i < length; i++) {
+            if (Character.digit(tag.epc.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.length() == 0;
+    }
+
+    // writes the tags that fit a record while there are free slots. returns the tags not written
+    public synchronized ArrayList<TagInfo> write(ArrayList<TagInfo> tags, HashSet<Statistics> statistics) {
+
+        ArrayList<TagInfo> rest = new ArrayList<>();
+        long free = capacity - (head - buffer.getLong(TAIL_AT));
+
+        for (TagInfo tag : tags) {
+            if (free <= 0 || !fits(tag, statistics)) {
+                rest.add(tag);
+                continue;
+            }
+            write(tag, (int) (head % capacity) * RECORD + HEADER);
+            head++;
+            free--;
+        }
+
+        buffer.putLong(HEAD_AT, head);
+        return rest;
+    }
+
+    private void write(TagInfo tag, int at) {
+
+        int length = tag.epc.length() / 2;
+        buffer.put(at + EPC_LENGTH_AT, (byte) length);
+        buffer.putShort(at + ANTENNA_AT, tag.antenna);
+        buffer.putShort(at + RSSI_AT, tag.rssi);
+        buffer.putShort(at + DISTANCE_AT, tag.distance);
+        buffer.putInt(at + READS_AT, tag.reads);
+        buffer.putShort(at + RSSI_MIN_AT, tag.rssiMin);
+        buffer.putShort(at + RSSI_MAX_AT, tag.rssiMax);
+        buffer.putLong(at + FIRST_SEEN_AT, tag.firstSeen);
+        buffer.putLong(at + LAST_SEEN_AT, tag.lastSeen);
+        buffer.putLong(at + RSSI_TOTAL_AT, tag.rssiTotal);
+        buffer.putInt(at + SIZE_AT, tag.size);
+
+        for (int i = 0; i < length; i++) {
+            int b = (Character.digit(tag.epc.charAt(i * 2), 16) << 4) | Character.digit(tag.epc.charAt(i * 2 + 1), 16);
+            buffer.put(at + EPC_AT + i, (byte) b);
+        }
+    }
+
+    // number of the next record written
+    public synchronized long head() {
+        return head;
+    }
+
+    public void close() {
+        // the mapping is released once the buffer is collected
+        file.delete();
+    }
+
+    public HashMap<String, Object> toMap() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("file", file.getAbsolutePath());
+        map.put("length", HEADER + (long) capacity * RECORD);
+        map.put("capacity", capacity);
+        map.put("record", RECORD);
+        return map;
+    }
+}
@@ -0,0 +1,157 @@
+package dev.fml.zebra123;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+// foreground service that keeps the device connected and reading while no flutter engine is
+// attached. while it runs it holds a reference to the hub, so the device and its event queue
+// outlive the engines. tags read while no engine listens are held in the tag store, and the next
+// engine to attach adopts the device and is handed every tag in a single snapshot.
+//
+// from android 14 a connectedDevice foreground service also needs a prerequisite permission.
+// the plugin declares BLUETOOTH_CONNECT, which the host app must request at runtime before
+// starting the service. without it the service isn't started
+public class ZebraService extends Service {
+
+    private static final int NOTIFICATION = 0x2B123;
+    private static final String CHANNEL = "dev.fml.zebra123.service";
+
+    // the hub kept alive by the service. null when the service isn't running
+    private static ZebraHub hub = null;
+
+    // starts the service, which keeps the device and its event queue once every engine detaches
+    public static synchronized void start(Context context, String title, String text) {
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE &&
+            context.checkSelfPermission(Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+            Log.e(Zebra123.getTagName(context), "Error in start(). BLUETOOTH_CONNECT permission not granted");
+            return;
+        }
+
+        boolean acquired = hub == null;
+        if (acquired) hub = ZebraHub.acquire(context);
+
+        Intent intent = new Intent(context, ZebraService.class);
+        intent.setAction(Zebra123.getServiceActionName(context));
+        if (title != null) intent.putExtra("title", title);
+        if (text != null) intent.putExtra("text", text);
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                context.startForegroundService(intent);
+            }
+            else {
+                context.startService(intent);
+            }
+        }
+        catch (Exception e) {
+
+            // not allowed to start, e.g. from the background on android 12 and up
+            Log.e(Zebra123.getTagName(context), "Error in start(). Error: " + e.getMessage());
+            if (acquired) release();
+        }
+    }
+
+    // stops the service. a device no engine is attached to is disconnected
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, ZebraService.class));
+    }
+
+    public static synchronized boolean isRunning() {
+        return hub != null;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+
+        try {
+
+            String title = intent != null ? intent.getStringExtra("title") : null;
+            String text = intent != null ? intent.getStringExtra("text") : null;
+            Notification notification = notification(title != null ? title : "Zebra123", text != null ? text : "Reading tags");
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                startForeground(NOTIFICATION, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+            }
+            else {
+                startForeground(NOTIFICATION, notification);
+            }
+
+            // restarted by the system with nothing to keep alive
+            if (!isRunning()) stopSelf();
+        }
+        catch (Exception e) {
+
+            // not allowed in the foreground, e.g. a missing permission. the service stops and the
+            // hub reference taken in start() is let go
+            Log.e(Zebra123.getTagName(this), "Error in onStartCommand(). Error: " + e.getMessage());
+            release();
+            stopSelf();
+        }
+
+        // the device can't be restored once the process is gone
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        release();
+        super.onDestroy();
+    }
+
+    // lets go of the hub reference taken in start(). the device is disconnected if no engine is
+    // attached
+    private static void release() {
+
+        boolean running;
+        synchronized (ZebraService.class) {
+            running = hub != null;
+            hub = null;
+        }
+
+        if (running) ZebraHub.release();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    // the ongoing notification a foreground service requires. tapping it opens the app
+    private Notification notification(String title, String text) {
+
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL, "Background reading", NotificationManager.IMPORTANCE_LOW));
+            builder = new Notification.Builder(this, CHANNEL);
+        }
+        else {
+            builder = new Notification.Builder(this);
+        }
+
+        Intent launch = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        if (launch != null) {
+            int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+            builder.setContentIntent(PendingIntent.getActivity(this, 0, launch, flags));
+        }
+
+        return builder
+                .setContentTitle(title)
+                .setContentText(text)
+                .setSmallIcon(getApplicationInfo().icon)
+                .setOngoing(true)
+                .build();
+    }
+}
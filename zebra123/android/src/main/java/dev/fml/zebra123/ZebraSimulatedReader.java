@@ -0,0 +1,335 @@
+package dev.fml.zebra123;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import dev.fml.zebra123.ZebraDevice.Modes;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// reader that generates reads from a simulated tag population without hardware. reads are drawn
+// from a seeded random source against a simulated clock, so the same settings always produce the
+// same reads, trigger pulls and disconnects. in realtime the clock follows the wall clock on a
+// background thread, otherwise it only advances when run() is called. nothing here depends on
+// android, so the read path can be driven from plain jvm unit tests
+public class ZebraSimulatedReader implements ZebraReader {
+
+    public static class Settings {
+
+        // number of tags in the field
+        public int population = 1000;
+
+        // epc's of the tags in the field. when empty the epc's are generated from the prefix
+        public ArrayList<String> epcs = new ArrayList<>();
+
+        // prefix of the generated epc's. the tag serial number fills the rest of the 96 bits
+        public String prefix = "3074257BF7194E40";
+
+        // prefix of the generated tid's, the class, mask designer and model of the chip
+        public String tidPrefix = "E2801190";
+
+        // reads per second while an inventory is running
+        public int rate = 1000;
+
+        // reads are spread evenly over this many antennas
+        public int antennas = 1;
+
+        // mean rssi of the population. each tag's mean is offset by up to +/- spread
+        public double rssiMean = -60;
+        public double rssiSpread = 15;
+
+        // standard deviation of the rssi of a single tag between reads
+        public double rssiDeviation = 4;
+
+        // ms between trigger pulls and ms the trigger is held. 0 for no trigger pulls
+        public long triggerInterval = 0;
+        public long triggerHold = 0;
+
+        // degrees celsius of the sled at rest, degrees it gains per second of reading and degrees it
+        // loses per second idle, down to the ambient temperature
+        public double ambient = 25;
+        public double heating = 0.05;
+        public double cooling = 0.1;
+
+        // battery % at connect, and % used per minute of reading
+        public double battery = 100;
+        public double drain = 0.5;
+
+        // ms after connecting that the reader disconnects. 0 stays connected
+        public long disconnectAfter = 0;
+
+        // advance the clock with the wall clock on a background thread
+        public boolean realtime = true;
+
+        public long seed = 1;
+    }
+
+    private final Settings settings;
+    private final Random random;
+
+    // the tag population, the tid and the mean rssi of each tag
+    private final String[] epcs;
+    private final String[] tids;
+    private final double[] means;
+
+    private Listener listener;
+
+    private volatile boolean connected = false;
+    private volatile boolean inventory = false;
+
+    // read the tid bank with each tag, and whether the running inventory does
+    private volatile boolean tid = false;
+    private volatile boolean tidInventory = false;
+
+    // simulated ms since connecting
+    private long clock = 0;
+
+    // wall clock time at connect. read times are offset from it
+    private long base = 0;
+
+    // reads owed to the clock
+    private double owed = 0;
+
+    private long reads = 0;
+
+    // simulated temperature and battery of the sled
+    private volatile double temperature;
+    private volatile double battery;
+
+    private Thread thread;
+
+    // simulated ms of an inventory round, counted by the attempts stop condition
+    private static final int ROUND = 50;
+
+    // the stop condition of the running inventory, the clock it started at and the tags it has read.
+    // null when the inventory runs until it is stopped
+    private volatile Stop stop = null;
+    private long started = 0;
+    private final HashSet<String> observed = new HashSet<>();
+
+    ZebraSimulatedReader(Settings settings) {
+
+        this.settings = settings;
+        this.random = new Random(settings.seed);
+
+        int population = settings.epcs.size() > 0 ? settings.epcs.size() : Math.max(1, settings.population);
+        epcs = new String[population];
+        tids = new String[population];
+        means = new double[population];
+
+        for (int i = 0; i < population; i++) {
+            epcs[i] = settings.epcs.size() > 0 ? settings.epcs.get(i) : epc(settings.prefix, i + 1);
+            tids[i] = epc(settings.tidPrefix, i + 1);
+            means[i] = settings.rssiMean + (random.nextDouble() * 2 - 1) * settings.rssiSpread;
+        }
+    }
+
+    // builds a 24 character epc, or tid, from the prefix and serial number
+    private static String epc(String prefix, long serial) {
+        StringBuilder epc = new StringBuilder(prefix == null ? "" : prefix.toUpperCase());
+        String hex = Long.toHexString(serial).toUpperCase();
+        while (epc.length() + hex.length() < 24) epc.append('0');
+        return epc.append(hex).toString();
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized boolean connect() {
+
+        if (connected) return true;
+
+        connected = true;
+        clock = 0;
+        owed = 0;
+        temperature = settings.ambient;
+        battery = settings.battery;
+        base = System.currentTimeMillis();
+
+        if (settings.realtime) {
+            thread = new Thread(() -> {
+                long last = System.currentTimeMillis();
+                while (connected) {
+                    try {
+                        Thread.sleep(10);
+                    }
+                    catch (InterruptedException e) {
+                        break;
+                    }
+                    long now = System.currentTimeMillis();
+                    run(now - last);
+                    last = now;
+                }
+            }, "zebra123-simulator");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        connected = false;
+        inventory = false;
+        if (thread != null) thread.interrupt();
+        thread = null;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void setMode(Modes mode) {
+        // the simulated trigger has no barcode function
+    }
+
+    @Override
+    public void startInventory() throws Exception {
+        startInventory(null);
+    }
+
+    @Override
+    public void startInventory(Stop stop) throws Exception {
+        if (!connected) throw new Exception("Reader is not connected");
+        synchronized (observed) {
+            observed.clear();
+            started = clock;
+            this.stop = stop;
+        }
+        tidInventory = tid;
+        inventory = true;
+    }
+
+    @Override
+    public void stopInventory() throws Exception {
+        if (!connected) throw new Exception("Reader is not connected");
+        stop = null;
+        inventory = false;
+    }
+
+    @Override
+    public void readTid(boolean read) {
+        tid = read;
+    }
+
+    @Override
+    public void requestStatus() {
+        if (!connected || listener == null) return;
+        listener.onBattery((int) Math.round(battery), false);
+        listener.onTemperature((int) Math.round(temperature));
+    }
+
+    @Override
+    public void prepareAccess() {
+        // nothing to configure
+    }
+
+    @Override
+    public synchronized void write(String epc, String password, Banks bank, String data, int offset) throws Exception {
+        if (!connected) throw new Exception("Reader is not connected");
+        for (int i = 0; i < epcs.length; i++) {
+            if (epcs[i].equals(epc)) {
+                if (bank == Banks.epc) epcs[i] = data;
+                return;
+            }
+        }
+        throw new Exception("Tag " + epc + " not found");
+    }
+
+    // returns the number of reads generated since the reader was created
+    public long reads() {
+        return reads;
+    }
+
+    // advances the simulated clock by duration ms, raising the reads, trigger pulls and disconnects
+    // that fall due. listeners are called on the calling thread. only one thread may drive the clock
+    public void run(long duration) {
+
+        long end = clock + duration;
+        while (clock < end && connected) {
+
+            clock++;
+
+            // trigger pulls. the first press is a full interval in, and there is no release before it
+            if (settings.triggerInterval > 0 && listener != null) {
+                long phase = clock % settings.triggerInterval;
+                if (phase == 0) listener.onTrigger(true);
+                else if (phase == settings.triggerHold && clock > settings.triggerInterval) listener.onTrigger(false);
+            }
+
+            // disconnect
+            if (settings.disconnectAfter > 0 && clock >= settings.disconnectAfter) {
+                disconnect();
+                if (listener != null) listener.onDisconnect();
+                break;
+            }
+
+            // the sled heats while reading and cools while idle
+            if (!inventory) {
+                temperature = Math.max(settings.ambient, temperature - settings.cooling / 1000);
+                continue;
+            }
+            temperature += settings.heating / 1000;
+            battery = Math.max(0, battery - settings.drain / 60000);
+
+            owed += settings.rate / 1000.0;
+            while (owed >= 1) {
+                owed -= 1;
+                read();
+            }
+
+            // the reader ends a bounded inventory itself
+            if (stop != null && ended()) {
+                stop = null;
+                inventory = false;
+                if (listener != null) listener.onInventoryStop();
+            }
+        }
+    }
+
+    // returns true once the stop condition of the inventory is met
+    private boolean ended() {
+        synchronized (observed) {
+            Stop stop = this.stop;
+            if (stop == null) return false;
+            long elapsed = clock - started;
+            if (stop.timeout > 0 && elapsed >= stop.timeout) return true;
+            switch (stop.type) {
+                case tags:
+                    return observed.size() >= stop.count;
+                case attempts:
+                    return elapsed / ROUND >= stop.count;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private void read() {
+
+        int index = random.nextInt(epcs.length);
+        double rssi = means[index] + random.nextGaussian() * settings.rssiDeviation;
+
+        long time = base + clock;
+        TagInfo tag = new TagInfo(time);
+        tag.seen = TagInfo.format(time);
+        tag.epc = epcs[index];
+        tag.antenna = (short) (1 + random.nextInt(Math.max(1, settings.antennas)));
+        tag.rssi = (short) Math.round(Math.max(-100, Math.min(-20, rssi)));
+        tag.size = tag.epc.length() / 2;
+        if (tidInventory) tag.memoryBankData = tids[index];
+
+        reads++;
+        if (stop != null) {
+            synchronized (observed) {
+                observed.add(tag.epc);
+            }
+        }
+        if (listener != null) listener.onRead(tag);
+    }
+}
@@ -0,0 +1,247 @@
+package dev.fml.zebra123;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// holds tags spilled from the tag store in on-disk runs sorted by epc.
+// runs are merged back into a single run whenever the store needs to see all of its tags
+public class ZebraTagSpill {
+
+    public interface Visitor {
+        void visit(TagInfo tag);
+    }
+
+    private final File directory;
+
+    // run files, each sorted by epc
+    private final ArrayList<File> runs = new ArrayList<>();
+
+    // number of tags in the runs. may count a tag more than once until the runs are compacted
+    private int count = 0;
+
+    // number of spills since the store was cleared
+    private int spills = 0;
+
+    private int sequence = 0;
+
+    ZebraTagSpill(File directory) {
+        this.directory = directory;
+
+        // remove runs left behind by an earlier process
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".run")) file.delete();
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int runs() {
+        return runs.size();
+    }
+
+    public int spills() {
+        return spills;
+    }
+
+    // writes the tags to a new sorted run
+    public void write(ArrayList<TagInfo> tags) throws IOException {
+
+        if (tags.size() == 0) return;
+
+        Collections.sort(tags, (a, b) -> a.epc.compareTo(b.epc));
+
+        File file = next();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        try {
+            for (TagInfo tag : tags) write(out, tag);
+        }
+        finally {
+            out.close();
+        }
+
+        runs.add(file);
+        count += tags.size();
+        spills++;
+    }
+
+    // merges all runs into a single run, combining records of the same tag. records of tags
+    // held in memory are folded into the memory copy and dropped from the run. every remaining
+    // record is passed to the visitor. when clearPending is set the pending flags are cleared
+    // in the merged run after the visitor has seen them
+    public void compact(Map<String, TagInfo> memory, boolean clearPending, Visitor visitor) throws IOException {
+
+        if (runs.size() == 0) return;
+
+        ArrayList<RunReader> readers = new ArrayList<>();
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(runs.size(), (a, b) -> a.head.epc.compareTo(b.head.epc));
+
+        File file = next();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        int written = 0;
+
+        try {
+            for (File run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) queue.add(reader);
+            }
+
+            while (queue.size() > 0) {
+
+                // combine every record of the same tag across the runs
+                RunReader reader = queue.poll();
+                TagInfo tag = reader.head;
+                if (reader.advance()) queue.add(reader);
+                while (queue.size() > 0 && queue.peek().head.epc.equals(tag.epc)) {
+                    RunReader other = queue.poll();
+                    tag.merge(other.head);
+                    if (other.advance()) queue.add(other);
+                }
+
+                // the tag is back in memory
+                TagInfo held = memory != null ? memory.get(tag.epc) : null;
+                if (held != null) {
+                    held.merge(tag);
+                    continue;
+                }
+
+                if (visitor != null) visitor.visit(tag);
+                if (clearPending) tag.pending = false;
+                write(out, tag);
+                written++;
+            }
+        }
+        finally {
+            out.close();
+            for (RunReader reader : readers) reader.close();
+        }
+
+        for (File run : runs) run.delete();
+        runs.clear();
+        if (written > 0) runs.add(file);
+        else file.delete();
+        count = written;
+    }
+
+    public void clear() {
+        for (File run : runs) run.delete();
+        runs.clear();
+        count = 0;
+        spills = 0;
+    }
+
+    private File next() {
+        if (!directory.exists()) directory.mkdirs();
+        return new File(directory, "tags-" + (sequence++) + ".run");
+    }
+
+    private static void write(DataOutputStream out, TagInfo tag) throws IOException {
+        out.writeUTF(tag.epc);
+        out.writeShort(tag.antenna);
+        out.writeShort(tag.rssi);
+        writeString(out, tag.status);
+        out.writeShort(tag.distance);
+        writeString(out, tag.memoryBankData);
+        writeString(out, tag.lockData);
+        out.writeInt(tag.size);
+        writeString(out, tag.seen);
+        writeString(out, tag.password);
+        out.writeInt(tag.reads);
+        out.writeLong(tag.firstSeen);
+        out.writeLong(tag.lastSeen);
+        out.writeShort(tag.rssiMin);
+        out.writeShort(tag.rssiMax);
+        out.writeLong(tag.rssiTotal);
+        int antennas = tag.antennaReads != null ? tag.antennaReads.size() : 0;
+        out.writeShort(antennas);
+        if (antennas > 0) {
+            for (Short antenna : tag.antennaReads.keySet()) {
+                out.writeShort(antenna);
+                out.writeInt(tag.antennaReads.get(antenna));
+            }
+        }
+        out.writeBoolean(tag.pending);
+    }
+
+    private static TagInfo read(DataInputStream in) throws IOException {
+        TagInfo tag = new TagInfo(0);
+        tag.epc = in.readUTF();
+        tag.antenna = in.readShort();
+        tag.rssi = in.readShort();
+        tag.status = readString(in);
+        tag.distance = in.readShort();
+        tag.memoryBankData = readString(in);
+        tag.lockData = readString(in);
+        tag.size = in.readInt();
+        tag.seen = readString(in);
+        tag.password = readString(in);
+        tag.reads = in.readInt();
+        tag.firstSeen = in.readLong();
+        tag.lastSeen = in.readLong();
+        tag.rssiMin = in.readShort();
+        tag.rssiMax = in.readShort();
+        tag.rssiTotal = in.readLong();
+        int antennas = in.readShort();
+        tag.antennaReads = new HashMap<>();
+        for (int i = 0; i < antennas; i++) tag.antennaReads.put(in.readShort(), in.readInt());
+        tag.pending = in.readBoolean();
+        return tag;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static class RunReader {
+
+        private final DataInputStream in;
+        TagInfo head;
+
+        RunReader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        }
+
+        // reads the next record into head. returns false at the end of the run
+        boolean advance() throws IOException {
+            try {
+                head = read(in);
+                return true;
+            }
+            catch (EOFException e) {
+                head = null;
+                return false;
+            }
+        }
+
+        void close() {
+            try {
+                in.close();
+            }
+            catch (IOException e) {}
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package dev.fml.zebra123;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+
+import dev.fml.zebra123.ZebraDevice.Sorts;
+import dev.fml.zebra123.ZebraDevice.Statistics;
+
+// holds the rfid tags read during an inventory. tags stay in the store until it is cleared,
+// while the tags read or changed since the last report are tracked separately.
+// when a memory budget is set, the least recently read tags are spilled to disk once the
+// budget is exceeded and merged back when a report is built or the store is queried
+public class ZebraTagStore {
+
+    // holds the tags in memory, least recently read first
+    private final LinkedHashMap<String, TagInfo> tags = new LinkedHashMap<>(16, 0.75f, true);
+
+    // holds the tags read since the last report
+    private final LinkedHashMap<String, TagInfo> pending = new LinkedHashMap<>();
+
+    // tags spilled to disk
+    private final ZebraTagSpill spill;
+
+    // runs are merged once there are more than this on disk
+    private static final int MAX_RUNS = 16;
+
+    // memory budget in bytes. 0 is unlimited
+    private long budget = 0;
+
+    // estimated bytes held by the tags in memory
+    private long usage = 0;
+
+    private static final Comparator<TagInfo> BY_LAST_SEEN = new Comparator<TagInfo>() {
+        @Override
+        public int compare(TagInfo a, TagInfo b) {
+            return Long.compare(b.lastSeen, a.lastSeen);
+        }
+    };
+
+    private static final Comparator<TagInfo> BY_RSSI = new Comparator<TagInfo>() {
+        @Override
+        public int compare(TagInfo a, TagInfo b) {
+            return Short.compare(b.rssi, a.rssi);
+        }
+    };
+
+    ZebraTagStore(File directory) {
+        spill = new ZebraTagSpill(directory);
+    }
+
+    // stores the read, carrying forward the statistics of an earlier read of the same tag. returns the earlier read
+    public synchronized TagInfo put(TagInfo data) {
+        TagInfo previous = tags.put(data.epc, data);
+        if (previous != null) {
+            data.accumulate(previous);
+            usage -= previous.bytes();
+        }
+        usage += data.bytes();
+        pending.put(data.epc, data);
+
+        if (budget > 0 && usage > budget) spill();
+        return previous;
+    }
+
+    // returns the tags read since the last report and resets them
+    public synchronized ArrayList<TagInfo> drain() {
+
+        ArrayList<TagInfo> list = new ArrayList<>();
+
+        // merge the spilled tags back, collecting the ones not yet reported
+        compact(true, tag -> {
+            if (tag.pending) list.add(tag);
+        });
+
+        list.addAll(pending.values());
+        pending.clear();
+        return list;
+    }
+
+    // returns the number of tags in memory read since the last report
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    // returns the number of tags in the store. tags read again after being spilled
+    // are counted twice until the store is next compacted
+    public synchronized int size() {
+        return tags.size() + spill.size();
+    }
+
+    public synchronized void clear() {
+        tags.clear();
+        pending.clear();
+        spill.clear();
+        usage = 0;
+    }
+
+    // sets the memory budget in bytes. 0 is unlimited
+    public synchronized void setBudget(long budget) {
+        this.budget = Math.max(0, budget);
+        if (this.budget > 0 && usage > this.budget) spill();
+    }
+
+    public synchronized HashMap<String, Object> getBudget() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("budget", budget);
+        map.put("usage", usage);
+        map.put("memory", tags.size());
+        map.put("spilled", spill.size());
+        map.put("runs", spill.runs());
+        map.put("spills", spill.spills());
+        return map;
+    }
+
+    // returns a page of tags, most recently seen or strongest first
+    public synchronized ArrayList<TagInfo> page(int offset, int limit, Sorts sort) {
+
+        if (offset < 0) offset = 0;
+        ArrayList<TagInfo> list = select(null, sort == Sorts.rssi ? BY_RSSI : BY_LAST_SEEN, limit > 0 ? offset + limit : 0);
+
+        if (offset >= list.size()) return new ArrayList<>();
+        return new ArrayList<>(list.subList(offset, list.size()));
+    }
+
+    // returns the tags whose epc starts with the prefix, most recently seen first
+    public synchronized ArrayList<TagInfo> prefix(String prefix, int limit) {
+        final String match = prefix == null ? "" : prefix.toUpperCase();
+        return select(match, BY_LAST_SEEN, limit);
+    }
+
+    // returns the n strongest tags, strongest first
+    public synchronized ArrayList<TagInfo> top(int n) {
+        if (n <= 0) return new ArrayList<>();
+        return select(null, BY_RSSI, n);
+    }
+
+    // returns the first count tags in sort order, optionally only those matching the epc prefix.
+    // a count of 0 returns all matching tags
+    private ArrayList<TagInfo> select(final String prefix, final Comparator<TagInfo> sort, final int count) {
+
+        // keep the best count tags in a heap with the worst at the root
+        final PriorityQueue<TagInfo> heap = new PriorityQueue<>(Math.max(1, count), Collections.reverseOrder(sort));
+        ZebraTagSpill.Visitor visitor = tag -> {
+            if (prefix != null && (tag.epc == null || !tag.epc.toUpperCase().startsWith(prefix))) return;
+            if (count <= 0 || heap.size() < count) heap.add(tag);
+            else if (sort.compare(tag, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(tag);
+            }
+        };
+
+        compact(false, visitor);
+        for (TagInfo tag : tags.values()) visitor.visit(tag);
+
+        ArrayList<TagInfo> list = new ArrayList<>(heap);
+        Collections.sort(list, sort);
+        return list;
+    }
+
+    // moves the least recently read tags to disk until usage is back under 3/4 of the budget
+    private void spill() {
+
+        long target = budget * 3 / 4;
+        ArrayList<TagInfo> cold = new ArrayList<>();
+
+        Iterator<TagInfo> iterator = tags.values().iterator();
+        while (usage > target && iterator.hasNext()) {
+            TagInfo tag = iterator.next();
+            iterator.remove();
+            tag.pending = pending.remove(tag.epc) != null;
+            usage -= tag.bytes();
+            cold.add(tag);
+        }
+
+        write(cold);
+    }
+
+    // moves the oldest pending tags beyond the limit to disk. they are reported once merged back.
+    // returns the number of tags spilled
+    public synchronized int spillPending(int limit) {
+
+        ArrayList<TagInfo> cold = new ArrayList<>();
+
+        Iterator<TagInfo> iterator = pending.values().iterator();
+        while (pending.size() > limit && iterator.hasNext()) {
+            TagInfo tag = iterator.next();
+            iterator.remove();
+            tags.remove(tag.epc);
+            tag.pending = true;
+            usage -= tag.bytes();
+            cold.add(tag);
+        }
+
+        write(cold);
+        return cold.size();
+    }
+
+    // stops reporting the oldest pending tags beyond the limit. the tags stay in the store.
+    // returns the number of tags dropped
+    public synchronized int dropPending(int limit) {
+
+        int dropped = 0;
+
+        Iterator<TagInfo> iterator = pending.values().iterator();
+        while (pending.size() > limit && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            dropped++;
+        }
+        return dropped;
+    }
+
+    private void write(ArrayList<TagInfo> cold) {
+
+        if (cold.size() == 0) return;
+
+        try {
+            spill.write(cold);
+
+            // bound the number of open runs
+            if (spill.runs() > MAX_RUNS) compact(false, null);
+        }
+        catch (Exception e) {
+            // keep the tags in memory if they can't be written
+            for (TagInfo tag : cold) {
+                tags.put(tag.epc, tag);
+                if (tag.pending) pending.put(tag.epc, tag);
+                usage += tag.bytes();
+            }
+        }
+    }
+
+    // merges the spilled runs. tags read again since they were spilled are folded into memory
+    private void compact(boolean clearPending, ZebraTagSpill.Visitor visitor) {
+
+        if (spill.runs() == 0) return;
+
+        try {
+            // fold spilled tags into the copies in memory. this doesn't touch the access order
+            HashMap<String, TagInfo> memory = new HashMap<>(tags);
+            spill.compact(memory, clearPending, visitor);
+
+            // folded tags that had unreported reads on disk are pending again
+            usage = 0;
+            for (TagInfo tag : tags.values()) {
+                if (tag.pending) {
+                    pending.put(tag.epc, tag);
+                    tag.pending = false;
+                }
+                usage += tag.bytes();
+            }
+        }
+        catch (Exception e) {
+            // runs are left as they are and retried on the next compaction
+        }
+    }
+
+    // converts a list of tags to maps
+    public static ArrayList<HashMap<String, Object>> toMaps(ArrayList<TagInfo> tags, HashSet<Statistics> statistics) {
+        ArrayList<HashMap<String, Object>> list = new ArrayList<>();
+        for (TagInfo tag : tags) list.add(tag.toMap(statistics));
+        return list;
+    }
+
+    static class TagInfo {
+
+        public String epc;
+        public short antenna;
+        public short rssi;
+        public String status;
+        public short distance;
+        public String memoryBankData;
+        public String lockData;
+        public int size;
+        public String seen;
+        public String password;
+
+        // read statistics
+        public int reads = 1;
+        public long firstSeen;
+        public long lastSeen;
+        public short rssiMin = Short.MAX_VALUE;
+        public short rssiMax = Short.MIN_VALUE;
+        public long rssiTotal;
+        public HashMap<Short, Integer> antennaReads;
+
+        // spilled with reads not yet reported
+        boolean pending;
+
+        // antenna and rssi last reported. delta reports leave out tags where neither changed
+        short reportedAntenna = -1;
+        short reportedRssi = Short.MIN_VALUE;
+
+        TagInfo() {
+            this(System.currentTimeMillis());
+            this.seen = format(lastSeen);
+        }
+
+        TagInfo(long now) {
+            this.firstSeen = now;
+            this.lastSeen = now;
+        }
+
+        // formats a time as the seen date
+        static String format(long time) {
+            return new SimpleDateFormat("dd/MM/yyyy HH:mm:ss.SSS").format(new Date(time)).toString();
+        }
+
+        // combines the statistics of another copy of the same tag. the most recent read wins
+        void merge(TagInfo other) {
+            if (other.lastSeen > lastSeen) {
+                antenna = other.antenna;
+                rssi = other.rssi;
+                status = other.status;
+                distance = other.distance;
+                memoryBankData = other.memoryBankData;
+                lockData = other.lockData;
+                size = other.size;
+                seen = other.seen;
+                password = other.password;
+                lastSeen = other.lastSeen;
+            }
+            reads += other.reads;
+            firstSeen = Math.min(firstSeen, other.firstSeen);
+            rssiMin = (short) Math.min(rssiMin, other.rssiMin);
+            rssiMax = (short) Math.max(rssiMax, other.rssiMax);
+            rssiTotal += other.rssiTotal;
+            if (other.antennaReads != null) {
+                if (antennaReads == null) antennaReads = new HashMap<>();
+                for (Short key : other.antennaReads.keySet()) {
+                    Integer count = antennaReads.get(key);
+                    antennaReads.put(key, (count == null ? 0 : count) + other.antennaReads.get(key));
+                }
+            }
+            pending = pending || other.pending;
+        }
+
+        // estimated heap bytes held for this tag, including its store entries
+        long bytes() {
+            long bytes = 160;
+            bytes += chars(epc) + chars(memoryBankData) + chars(lockData) + chars(seen) + chars(password) + chars(status);
+            if (antennaReads != null) bytes += 48 + 48L * antennaReads.size();
+            return bytes;
+        }
+
+        private static long chars(String value) {
+            return value == null ? 0 : 40 + 2L * value.length();
+        }
+
+        // carries the statistics of an earlier read of the same tag forward into this read
+        void accumulate(TagInfo previous) {
+            reads = previous.reads + 1;
+            firstSeen = previous.firstSeen;
+            rssiMin = (short) Math.min(previous.rssiMin, rssi);
+            rssiMax = (short) Math.max(previous.rssiMax, rssi);
+            rssiTotal = previous.rssiTotal + rssi;
+            antennaReads = previous.antennaReads;
+            countAntenna();
+            reportedAntenna = previous.reportedAntenna;
+            reportedRssi = previous.reportedRssi;
+        }
+
+        // returns true if the antenna or rssi changed since the tag was last reported
+        boolean changed() {
+            return antenna != reportedAntenna || rssi != reportedRssi;
+        }
+
+        void reported() {
+            reportedAntenna = antenna;
+            reportedRssi = rssi;
+        }
+
+        // starts the statistics from this read
+        void begin() {
+            rssiMin = rssi;
+            rssiMax = rssi;
+            rssiTotal = rssi;
+            antennaReads = new HashMap<>();
+            countAntenna();
+        }
+
+        private void countAntenna() {
+            if (antennaReads == null) antennaReads = new HashMap<>();
+            Integer count = antennaReads.get(antenna);
+            antennaReads.put(antenna, count == null ? 1 : count + 1);
+        }
+
+        HashMap<String, Object> toMap(HashSet<Statistics> statistics) {
+
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("epc", epc);
+            map.put("antenna", antenna);
+            map.put("rssi", rssi);
+            map.put("status", status);
+            map.put("distance", distance);
+            map.put("memoryBankData", memoryBankData);
+            map.put("lockData", lockData);
+            map.put("size", size);
+            map.put("seen", seen);
+            map.put("password", password);
+
+            for (Statistics statistic : statistics) {
+                switch (statistic) {
+                    case reads:
+                        map.put("reads", reads);
+                        break;
+                    case firstSeen:
+                        map.put("firstSeen", firstSeen);
+                        break;
+                    case lastSeen:
+                        map.put("lastSeen", lastSeen);
+                        break;
+                    case rssiMin:
+                        map.put("rssiMin", rssiMin);
+                        break;
+                    case rssiMax:
+                        map.put("rssiMax", rssiMax);
+                        break;
+                    case rssiMean:
+                        map.put("rssiMean", reads > 0 ? (double) rssiTotal / reads : (double) rssi);
+                        break;
+                    case antennas:
+                        HashMap<String, Object> antennas = new HashMap<>();
+                        if (antennaReads != null) {
+                            for (Short key : antennaReads.keySet())
+                                antennas.put(key.toString(), antennaReads.get(key));
+                        }
+                        map.put("antennas", antennas);
+                        break;
+                    case rate:
+                        // reads per second over the time the tag has been seen
+                        long elapsed = lastSeen - firstSeen;
+                        map.put("rate", elapsed > 0 ? reads * 1000.0 / elapsed : (double) reads);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package dev.fml.zebra123;
+
+import android.os.Trace;
+
+import java.util.HashMap;
+
+// per stage latency of rfid reports, from the reader callback to the event channel. stamps are
+// wall clock us so dart can measure the last hop with its own clock. each stage is also emitted
+// as a trace section so it shows in system traces
+public class ZebraTrace {
+
+    public static final ZebraTrace shared = new ZebraTrace();
+
+    enum Stages {
+
+        // reader callback to the read being stored
+        read,
+
+        // oldest read of a report being stored to the report being built
+        store,
+
+        // building the report and posting it to the main thread
+        flush,
+
+        // waiting on the main thread
+        post,
+
+        // encoding the report and handing it to the event channel
+        codec
+    }
+
+    // anchors the monotonic clock to the wall clock
+    private static final long BASE_US = System.currentTimeMillis() * 1000;
+    private static final long BASE_NS = System.nanoTime();
+
+    // trace section names, built once so the read path doesn't allocate
+    private static final String[] SECTIONS = new String[Stages.values().length];
+    static {
+        for (Stages stage : Stages.values()) SECTIONS[stage.ordinal()] = "zebra123." + stage;
+    }
+
+    private final ZebraMetrics.Histogram[] stages = new ZebraMetrics.Histogram[Stages.values().length];
+
+    ZebraTrace() {
+        for (int i = 0; i < stages.length; i++) stages[i] = new ZebraMetrics.Histogram();
+    }
+
+    // wall clock time in us. monotonic, so stages never measure negative
+    public static long now() {
+        return BASE_US + (System.nanoTime() - BASE_NS) / 1000;
+    }
+
+    public static void begin(Stages stage) {
+        Trace.beginSection(SECTIONS[stage.ordinal()]);
+    }
+
+    public static void end() {
+        Trace.endSection();
+    }
+
+    // records the us between the start and end of a stage
+    public void record(Stages stage, long start, long end) {
+        stages[stage.ordinal()].record(end - start);
+    }
+
+    public HashMap<String, Object> toMap() {
+        HashMap<String, Object> map = new HashMap<>();
+        for (Stages stage : Stages.values()) map.put(stage.toString(), stages[stage.ordinal()].toMap());
+        return map;
+    }
+
+    public void reset() {
+        for (ZebraMetrics.Histogram stage : stages) stage.reset();
+    }
+}
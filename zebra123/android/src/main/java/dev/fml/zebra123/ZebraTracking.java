@@ -0,0 +1,138 @@
+package dev.fml.zebra123;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import dev.fml.zebra123.ZebraDevice.Notifies;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// named tracking sessions served from one inventory run. each session has its own epc's and notify
+// policy. an index from epc to the sessions tracking it matches a read against every session with
+// one hash lookup, whatever the number of sessions
+public class ZebraTracking {
+
+    private final HashMap<String, Session> sessions = new HashMap<>();
+
+    // the sessions tracking each epc
+    private final HashMap<String, Session[]> index = new HashMap<>();
+
+    // starts a session, replacing any session of the same name
+    public synchronized void start(String name, Collection<String> epcs, Notifies notify) {
+
+        stop(name);
+
+        Session session = new Session(name, notify);
+        for (String epc : epcs) {
+            if (epc == null || !session.epcs.add(epc)) continue;
+
+            Session[] tracking = index.get(epc);
+            if (tracking == null) tracking = new Session[] { session };
+            else {
+                Session[] grown = new Session[tracking.length + 1];
+                System.arraycopy(tracking, 0, grown, 0, tracking.length);
+                grown[tracking.length] = session;
+                tracking = grown;
+            }
+            index.put(epc, tracking);
+        }
+        sessions.put(name, session);
+    }
+
+    // stops a session. returns false if there is no session of that name
+    public synchronized boolean stop(String name) {
+
+        Session session = sessions.remove(name);
+        if (session == null) return false;
+
+        for (String epc : session.epcs) {
+            Session[] tracking = index.get(epc);
+            if (tracking == null) continue;
+            if (tracking.length == 1) {
+                index.remove(epc);
+                continue;
+            }
+            Session[] shrunk = new Session[tracking.length - 1];
+            for (int i = 0, j = 0; i < tracking.length; i++) if (tracking[i] != session) shrunk[j++] = tracking[i];
+            index.put(epc, shrunk);
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(String name) {
+        return sessions.containsKey(name);
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    // returns the sessions tracking the epc, or null if none is
+    public synchronized Session[] match(String epc) {
+        return epc != null ? index.get(epc) : null;
+    }
+
+    public synchronized ArrayList<HashMap<String, Object>> toMaps() {
+        ArrayList<HashMap<String, Object>> list = new ArrayList<>();
+        for (Session session : sessions.values()) list.add(session.toMap());
+        return list;
+    }
+
+    static class Session {
+
+        final String name;
+        final Notifies notify;
+        final HashSet<String> epcs = new HashSet<>();
+
+        // antenna and rssi of each tag last reported
+        private final HashMap<String, Integer> reported = new HashMap<>();
+
+        // reads matched
+        private long matched = 0;
+
+        Session(String name, Notifies notify) {
+            this.name = name;
+            this.notify = notify;
+        }
+
+        // applies a matched read. returns true if the policy reports it
+        synchronized boolean notify(TagInfo tag) {
+
+            matched++;
+
+            int state = (tag.antenna << 16) | (tag.rssi & 0xFFFF);
+            Integer previous = reported.get(tag.epc);
+
+            switch (notify) {
+
+                // the first read of each tag
+                case first:
+                    if (previous != null) return false;
+                    break;
+
+                // every read
+                case every:
+                    break;
+
+                // the first read of each tag and reads from another antenna or at another rssi
+                default:
+                    if (previous != null && previous == state) return false;
+                    break;
+            }
+
+            reported.put(tag.epc, state);
+            return true;
+        }
+
+        synchronized HashMap<String, Object> toMap() {
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("session", name);
+            map.put("notify", notify.toString());
+            map.put("size", epcs.size());
+            map.put("found", reported.size());
+            map.put("matched", matched);
+            return map;
+        }
+    }
+}
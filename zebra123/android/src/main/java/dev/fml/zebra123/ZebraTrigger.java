@@ -0,0 +1,137 @@
+package dev.fml.zebra123;
+
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// handheld trigger state machine. a press starts the run right away. a release only stops it once
+// the trigger has stayed up for the debounce time and the run has lasted the minimum time, so a
+// storm of presses becomes one run rather than a start and stop per press. starts and stops are run
+// in order on one thread, so they can't overtake each other
+public class ZebraTrigger {
+
+    enum States {
+        idle,
+        running,
+        stopping
+    }
+
+    interface Actions {
+        void start();
+        void stop();
+    }
+
+    private final Actions actions;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final ZebraMetrics metrics = ZebraMetrics.shared;
+
+    // ms the trigger must stay up before the run stops, and the least ms a run lasts
+    private int debounce = 0;
+    private int minimum = 0;
+
+    private States state = States.idle;
+
+    // ms the run started
+    private long started = 0;
+
+    // the stop waiting out the debounce and minimum time. null when none is
+    private ScheduledFuture<?> stopping = null;
+
+    // us the trigger was pressed to start the run. 0 once the first tag is read
+    private volatile long pressed = 0;
+
+    // presses and releases, and presses that continued a stopping run
+    private long presses = 0;
+    private long releases = 0;
+    private long continued = 0;
+
+    private final Runnable stop = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (ZebraTrigger.this) {
+                if (state != States.stopping) return;
+                state = States.idle;
+                stopping = null;
+                pressed = 0;
+            }
+            actions.stop();
+        }
+    };
+
+    ZebraTrigger(Actions actions) {
+        this.actions = actions;
+    }
+
+    // sets the debounce and minimum run ms. a negative value leaves its setting unchanged
+    public synchronized void configure(int debounce, int minimum) {
+        if (debounce >= 0) this.debounce = debounce;
+        if (minimum >= 0) this.minimum = minimum;
+    }
+
+    public synchronized void press() {
+
+        presses++;
+
+        // pressed again before the run stopped, so it carries on
+        if (state == States.stopping) {
+            if (stopping != null) stopping.cancel(false);
+            stopping = null;
+            state = States.running;
+            continued++;
+            return;
+        }
+        if (state == States.running) return;
+
+        state = States.running;
+        started = System.currentTimeMillis();
+        pressed = ZebraTrace.now();
+        executor.execute(actions::start);
+    }
+
+    public synchronized void release() {
+
+        releases++;
+        if (state != States.running) return;
+
+        state = States.stopping;
+        long delay = Math.max(debounce, started + minimum - System.currentTimeMillis());
+        if (delay > 0) stopping = executor.schedule(stop, delay, TimeUnit.MILLISECONDS);
+        else executor.execute(stop);
+    }
+
+    // the run was stopped by something other than the trigger, a stop from the host or the reader
+    // ending a bounded scan. the trigger goes back to idle, so the next press starts a run again
+    public synchronized void stopped() {
+        if (stopping != null) stopping.cancel(false);
+        stopping = null;
+        state = States.idle;
+        pressed = 0;
+    }
+
+    // called on every read. the first read of a run measures the latency from the press
+    public void read(long now) {
+        long pressed = this.pressed;
+        if (pressed == 0) return;
+        this.pressed = 0;
+        metrics.firstRead.record(now - pressed);
+    }
+
+    public void dispose() {
+        executor.shutdownNow();
+    }
+
+    public synchronized HashMap<String, Object> toMap() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("state", state.toString());
+        map.put("debounce", debounce);
+        map.put("minimum", minimum);
+        map.put("presses", presses);
+        map.put("releases", releases);
+        map.put("continued", continued);
+        map.put("firstRead", metrics.firstRead.toMap());
+        return map;
+    }
+}
@@ -0,0 +1,73 @@
+package dev.fml.zebra123;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import dev.fml.zebra123.ZebraDevice.Events;
+import io.flutter.plugin.common.EventChannel.EventSink;
+
+// the merging of events queued within one frame. the main thread handler does nothing on the
+// jvm, so events wait in the queue until run() delivers them as the frame would
+public class ZebraEventQueueTest {
+
+    private ZebraEventQueue queue;
+    private final ArrayList<HashMap> delivered = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        queue = new ZebraEventQueue(mock(Context.class));
+        ZebraEventQueue.Engine engine = new ZebraEventQueue.Engine();
+        queue.attach(engine);
+        queue.setSink(engine, ZebraEventQueue.Channels.rfid, new EventSink() {
+
+            @Override
+            public void success(Object event) {
+                delivered.add((HashMap) event);
+            }
+
+            @Override
+            public void error(String code, String message, Object details) {
+            }
+
+            @Override
+            public void endOfStream() {
+            }
+        });
+    }
+
+    @Test
+    public void manifestProgressKeepsTheTagsOfEveryReport() {
+
+        queue.send(ZebraDevice.Interfaces.rfidapi3, Events.manifestProgress, progress(2, 1, Arrays.asList("A", "B"), Arrays.asList("X")));
+        queue.send(ZebraDevice.Interfaces.rfidapi3, Events.manifestProgress, progress(3, 2, Arrays.asList("C"), Arrays.asList("Y")));
+        queue.run();
+
+        // one report, with the newer counts and the tags of both
+        assertEquals(1, delivered.size());
+        HashMap map = delivered.get(0);
+        assertEquals(Events.manifestProgress.toString(), map.get("eventName"));
+        assertEquals(3, map.get("found"));
+        assertEquals(2, map.get("unexpected"));
+        assertEquals(Arrays.asList("A", "B", "C"), map.get("foundTags"));
+        assertEquals(Arrays.asList("X", "Y"), map.get("unexpectedTags"));
+    }
+
+    private static HashMap<String, Object> progress(int found, int unexpected, List<String> foundTags, List<String> unexpectedTags) {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("found", found);
+        map.put("unexpected", unexpected);
+        map.put("foundTags", new ArrayList<>(foundTags));
+        map.put("unexpectedTags", new ArrayList<>(unexpectedTags));
+        return map;
+    }
+}
@@ -0,0 +1,271 @@
+package dev.fml.zebra123;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.os.Handler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.MockedConstruction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import dev.fml.zebra123.ZebraDevice.Events;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+import io.flutter.plugin.common.EventChannel.EventSink;
+
+// drives the rfid read path on the jvm. ZebraRfid is built on the simulated reader, whose clock
+// only advances when run() is called. the event queue delivers on an interval rather than per
+// frame, and the main thread handler is mocked to deliver in place, so the events sent to flutter
+// are captured as they are sent
+public class ZebraRfidTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockedConstruction<Handler> handlers;
+
+    private Context context;
+    private CapturedEvents events;
+    private ZebraEventQueue queue;
+    private final ZebraEventQueue.Engine engine = new ZebraEventQueue.Engine();
+    private ZebraRfid rfid;
+
+    // reads that reached the pipeline
+    private final AtomicLong reads = new AtomicLong();
+
+    @Before
+    public void setUp() throws Exception {
+        handlers = mockConstruction(Handler.class, (handler, construction) -> {
+            when(handler.post(any(Runnable.class))).thenAnswer(invocation -> {
+                ((Runnable) invocation.getArgument(0)).run();
+                return true;
+            });
+            when(handler.postDelayed(any(Runnable.class), anyLong())).thenAnswer(invocation -> {
+                ((Runnable) invocation.getArgument(0)).run();
+                return true;
+            });
+        });
+        ZebraEventQueue.setInterval(1);
+        context = mock(Context.class);
+        when(context.getCacheDir()).thenReturn(folder.getRoot());
+        events = new CapturedEvents();
+
+        // one engine is attached, every channel of it captured in the one sink
+        queue = new ZebraEventQueue(context);
+        queue.attach(engine);
+        for (ZebraEventQueue.Channels channel : ZebraEventQueue.Channels.values()) queue.setSink(engine, channel, events);
+    }
+
+    @After
+    public void tearDown() {
+        if (rfid != null) rfid.dispose();
+        handlers.close();
+        ZebraEventQueue.setInterval(0);
+    }
+
+    private ZebraSimulatedReader connect(ZebraSimulatedReader.Settings settings) {
+        settings.realtime = false;
+        ZebraSimulatedReader reader = new ZebraSimulatedReader(settings);
+        rfid = new ZebraRfid(context, queue, reader) {
+            @Override
+            public void onRead(TagInfo data) {
+                reads.incrementAndGet();
+                super.onRead(data);
+            }
+        };
+        assertTrue(reader.connect());
+        return reader;
+    }
+
+    @Test
+    public void readsThePopulationAtTheReaderRate() {
+
+        ZebraSimulatedReader.Settings settings = new ZebraSimulatedReader.Settings();
+        settings.population = 200;
+        settings.rate = 5000;
+        ZebraSimulatedReader reader = connect(settings);
+
+        rfid.startScanning();
+
+        // 10 simulated seconds at 5000 reads per second
+        reader.run(10000);
+
+        rfid.stopScanning();
+
+        assertEquals(50000, reads.get());
+
+        // every tag of the population is reported once the scan stops
+        assertEquals(1, events.count(Events.startRead));
+        assertEquals(1, events.count(Events.stopRead));
+        assertEquals(200, events.epcs().size());
+    }
+
+    @Test
+    public void triggerPullsStartAndStopTheScan() throws Exception {
+
+        ZebraSimulatedReader.Settings settings = new ZebraSimulatedReader.Settings();
+        settings.population = 50;
+        settings.rate = 1000;
+        settings.triggerInterval = 1000;
+        settings.triggerHold = 500;
+        ZebraSimulatedReader reader = connect(settings);
+
+        // the trigger is pressed each second and released half a second later. starts and stops
+        // are run in the background, so each is awaited before the clock moves on
+        reader.run(500);
+        for (int pull = 1; pull <= 2; pull++) {
+            final int pulls = pull;
+
+            reader.run(500);
+            await(() -> events.count(Events.startRead) == pulls);
+
+            int reported = events.epcs().size();
+            reader.run(500);
+            // the tags read while the trigger was held are reported on release
+            await(() -> events.count(Events.stopRead) == pulls && events.count(Events.readRfid) >= pulls);
+            assertTrue(events.epcs().size() >= reported);
+        }
+
+        assertEquals(2, events.count(Events.startRead));
+        assertEquals(2, events.count(Events.stopRead));
+        assertEquals(50, events.epcs().size());
+    }
+
+    @Test
+    public void hostStopLeavesTheTriggerIdle() throws Exception {
+
+        ZebraSimulatedReader.Settings settings = new ZebraSimulatedReader.Settings();
+        settings.population = 50;
+        settings.triggerInterval = 1000;
+        settings.triggerHold = 500;
+        ZebraSimulatedReader reader = connect(settings);
+
+        // a long debounce, so a release still stopping the run would swallow the next press
+        rfid.trigger(60000, 0);
+
+        reader.run(1000);
+        await(() -> events.count(Events.startRead) == 1);
+
+        // flutter stops the scan while the trigger is held
+        rfid.stopScanning();
+        assertEquals(1, events.count(Events.stopRead));
+
+        // the release has no run to stop, and the next press starts one
+        reader.run(1000);
+        await(() -> events.count(Events.startRead) == 2);
+    }
+
+    @Test
+    public void disconnectAfterEndsTheReads() {
+
+        ZebraSimulatedReader.Settings settings = new ZebraSimulatedReader.Settings();
+        settings.rate = 1000;
+        settings.disconnectAfter = 500;
+        ZebraSimulatedReader reader = connect(settings);
+
+        rfid.startScanning();
+        reader.run(2000);
+
+        // reads stop at the disconnect, half a second in
+        assertTrue("read " + reads.get(), reads.get() >= 490 && reads.get() <= 500);
+        assertFalse(reader.isConnected());
+
+        ArrayList<HashMap> status = events.get(Events.connectionStatus);
+        assertEquals(1, status.size());
+        assertEquals(ZebraDevice.ZebraConnectionStatus.disconnected.toString(), status.get(0).get("status"));
+    }
+
+    @Test
+    public void resyncSendsTheSnapshotToTheEngineThatAsked() {
+
+        // a second engine listening to the tag reports
+        CapturedEvents other = new CapturedEvents();
+        ZebraEventQueue.Engine second = new ZebraEventQueue.Engine();
+        queue.attach(second);
+        queue.setSink(second, ZebraEventQueue.Channels.rfid, other);
+
+        ZebraSimulatedReader.Settings settings = new ZebraSimulatedReader.Settings();
+        settings.population = 20;
+        ZebraSimulatedReader reader = connect(settings);
+
+        rfid.startScanning();
+        reader.run(1000);
+        rfid.stopScanning();
+        rfid.resync(engine);
+
+        // the snapshot follows on from the last report, so the other engine's stream carries on
+        ArrayList<HashMap> snapshots = events.get(Events.rfidSnapshot);
+        assertEquals(1, snapshots.size());
+        assertEquals(20, ((ArrayList) snapshots.get(0).get("tags")).size());
+        ArrayList<HashMap> reports = other.get(Events.readRfid);
+        assertEquals(reports.get(reports.size() - 1).get("sequence"), snapshots.get(0).get("sequence"));
+        assertEquals(0, other.count(Events.rfidSnapshot));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    // captures the events sent to flutter, unpacking batches
+    private static class CapturedEvents implements EventSink {
+
+        private final ArrayList<HashMap> maps = new ArrayList<>();
+
+        @Override
+        public synchronized void success(Object event) {
+            HashMap map = (HashMap) event;
+            if (Events.batch.toString().equals(map.get("eventName"))) {
+                for (Object batched : (ArrayList) map.get("events")) maps.add((HashMap) batched);
+            }
+            else maps.add(map);
+        }
+
+        @Override
+        public void error(String code, String message, Object details) {
+        }
+
+        @Override
+        public void endOfStream() {
+        }
+
+        synchronized int count(Events event) {
+            return get(event).size();
+        }
+
+        synchronized ArrayList<HashMap> get(Events event) {
+            ArrayList<HashMap> list = new ArrayList<>();
+            for (HashMap map : maps) if (event.toString().equals(map.get("eventName"))) list.add(map);
+            return list;
+        }
+
+        // the epc's of every tag reported. large reports carry them encoded
+        synchronized HashSet<String> epcs() {
+            HashSet<String> epcs = new HashSet<>();
+            for (HashMap map : get(Events.readRfid)) {
+                if (map.get("epcs") instanceof byte[]) epcs.addAll(ZebraEpcCodec.decode((byte[]) map.get("epcs")));
+                else for (Object tag : (ArrayList) map.get("tags")) epcs.add((String) ((HashMap) tag).get("epc"));
+            }
+            return epcs;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package dev.fml.zebra123;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// per read cost of the modes that count or rank tags instead of storing them
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CountingBenchmark {
+
+    private static final int READS = 1 << 16;
+
+    @Param({"100", "1000", "10000"})
+    public int population;
+
+    private TagInfo[] reads;
+    private ZebraGtin aggregator;
+    private ZebraCardinality cardinality;
+    private ZebraNearest nearest;
+    private ZebraManifest manifest;
+    private int next = 0;
+
+    @Setup(Level.Iteration)
+    public void create() {
+        if (reads == null) reads = Reads.generate(population, READS, 4);
+        String[] epcs = Reads.epcs(reads);
+        aggregator = new ZebraGtin();
+        cardinality = new ZebraCardinality(true, 1000);
+        nearest = new ZebraNearest(10);
+        manifest = new ZebraManifest(Arrays.asList(epcs).subList(0, epcs.length / 2), false);
+    }
+
+    @Benchmark
+    public boolean aggregate() {
+        TagInfo tag = reads[next++ & (READS - 1)];
+        return aggregator.add(tag.epc, tag.antenna);
+    }
+
+    @Benchmark
+    public void estimate() {
+        TagInfo tag = reads[next++ & (READS - 1)];
+        cardinality.add(tag.epc, tag.antenna, tag.lastSeen);
+    }
+
+    @Benchmark
+    public boolean nearest() {
+        TagInfo tag = reads[next++ & (READS - 1)];
+        return nearest.add(tag.epc, tag.rssi, tag.lastSeen);
+    }
+
+    @Benchmark
+    public boolean reconcile() {
+        return manifest.add(reads[next++ & (READS - 1)].epc);
+    }
+}
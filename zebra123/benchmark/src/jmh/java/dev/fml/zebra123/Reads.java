@@ -0,0 +1,92 @@
+package dev.fml.zebra123;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// reads generated up front by the simulated reader, so the benchmarks measure the pipeline
+// and not the generator
+final class Reads {
+
+    private Reads() {}
+
+    // returns count reads spread over a population of tags
+    static TagInfo[] generate(int population, int count, int antennas) {
+
+        ZebraSimulatedReader.Settings settings = new ZebraSimulatedReader.Settings();
+        settings.population = population;
+        settings.antennas = antennas;
+        settings.rate = 1000;
+        settings.realtime = false;
+
+        final ArrayList<TagInfo> list = new ArrayList<>(count);
+        ZebraSimulatedReader reader = new ZebraSimulatedReader(settings);
+        reader.setListener(new ZebraReader.Listener() {
+
+            @Override
+            public void onRead(TagInfo tag) {
+                list.add(tag);
+            }
+
+            @Override
+            public void onBarcode(String barcode, String format) {
+            }
+
+            @Override
+            public void onTrigger(boolean pressed) {
+            }
+
+            @Override
+            public void onInventoryStop() {
+            }
+
+            @Override
+            public void onBattery(int level, boolean charging) {
+            }
+
+            @Override
+            public void onTemperature(int temperature) {
+            }
+
+            @Override
+            public void onDisconnect() {
+            }
+        });
+
+        try {
+            reader.connect();
+            reader.startInventory();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        // one read per simulated ms
+        reader.run(count);
+        reader.disconnect();
+
+        return list.toArray(new TagInfo[0]);
+    }
+
+    // returns the epc's of the population in the order the reader generates them
+    static String[] epcs(TagInfo[] reads) {
+        ArrayList<String> list = new ArrayList<>();
+        HashSet<String> seen = new HashSet<>();
+        for (TagInfo tag : reads) {
+            if (seen.add(tag.epc)) list.add(tag.epc);
+        }
+        return list.toArray(new String[0]);
+    }
+
+    // a fresh copy of a read, as the reader hands the pipeline a new object per read
+    static TagInfo copy(TagInfo read) {
+        TagInfo tag = new TagInfo(read.lastSeen);
+        tag.epc = read.epc;
+        tag.antenna = read.antenna;
+        tag.rssi = read.rssi;
+        tag.size = read.size;
+        tag.seen = read.seen;
+        return tag;
+    }
+}
@@ -0,0 +1,65 @@
+package dev.fml.zebra123;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import dev.fml.zebra123.ZebraDevice.Statistics;
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// cost of converting a tag to the map sent over the event channel
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark {
+
+    private static final int READS = 1 << 12;
+
+    private TagInfo[] reads;
+    private HashSet<Statistics> none;
+    private HashSet<Statistics> all;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        reads = Reads.generate(1000, READS, 4);
+        for (TagInfo tag : reads) tag.begin();
+        none = new HashSet<>();
+        all = new HashSet<>(Arrays.asList(Statistics.values()));
+        all.remove(Statistics.unknown);
+    }
+
+    @Benchmark
+    public HashMap<String, Object> toMap() {
+        return reads[next++ & (READS - 1)].toMap(none);
+    }
+
+    @Benchmark
+    public HashMap<String, Object> toMapWithStatistics() {
+        return reads[next++ & (READS - 1)].toMap(all);
+    }
+
+    // the reflection based conversion of ZebraRfid.transitionEntity(), which can't be loaded
+    // without android
+    @Benchmark
+    public HashMap<String, Object> reflection() throws IllegalAccessException {
+        Object tag = reads[next++ & (READS - 1)];
+        HashMap<String, Object> map = new HashMap<>();
+        for (Field field : tag.getClass().getDeclaredFields()) {
+            field.setAccessible(true);
+            map.put(field.getName(), field.get(tag));
+        }
+        return map;
+    }
+}
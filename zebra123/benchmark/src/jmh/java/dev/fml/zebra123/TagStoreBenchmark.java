@@ -0,0 +1,81 @@
+package dev.fml.zebra123;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// cost of storing a read, including the dedupe against earlier reads of the same tag,
+// and of building the tag report sent to flutter
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TagStoreBenchmark {
+
+    private static final int READS = 1 << 16;
+    private static final int BATCH = 1000;
+
+    @Param({"100", "1000", "10000"})
+    public int population;
+
+    // memory budget in bytes. 0 never spills
+    @Param({"0", "262144"})
+    public long budget;
+
+    private TagInfo[] reads;
+    private ZebraTagStore store;
+    private File directory;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        reads = Reads.generate(population, READS, 4);
+        directory = new File(System.getProperty("java.io.tmpdir"), "zebra123-benchmark");
+    }
+
+    @Setup(Level.Iteration)
+    public void create() {
+        store = new ZebraTagStore(directory);
+        store.setBudget(budget);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        store.clear();
+    }
+
+    // a single read
+    @Benchmark
+    public TagInfo put() {
+        TagInfo tag = Reads.copy(reads[next++ & (READS - 1)]);
+        tag.begin();
+        return store.put(tag);
+    }
+
+    // a batch of reads followed by the report of the tags read
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ArrayList<HashMap<String, Object>> putAndReport() {
+        for (int i = 0; i < BATCH; i++) {
+            TagInfo tag = Reads.copy(reads[next++ & (READS - 1)]);
+            tag.begin();
+            store.put(tag);
+        }
+        return ZebraTagStore.toMaps(store.drain(), new HashSet<ZebraDevice.Statistics>());
+    }
+}
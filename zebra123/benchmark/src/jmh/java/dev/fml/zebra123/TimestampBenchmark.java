@@ -0,0 +1,35 @@
+package dev.fml.zebra123;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// cost of timestamping a read. every rfid read and barcode intent formats the seen date
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimestampBenchmark {
+
+    @Benchmark
+    public long time() {
+        return System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public String format() {
+        return TagInfo.format(System.currentTimeMillis());
+    }
+
+    // a read as built by the api3 reader
+    @Benchmark
+    public TagInfo tag() {
+        return new TagInfo();
+    }
+}
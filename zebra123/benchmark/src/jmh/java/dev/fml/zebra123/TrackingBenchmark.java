@@ -0,0 +1,74 @@
+package dev.fml.zebra123;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import dev.fml.zebra123.ZebraTagStore.TagInfo;
+
+// cost of matching a read against the tracking sessions. ZebraTracking indexes every session's
+// epc's, so match() is one hash lookup whatever the number of sessions. sets checks each session's
+// epc's in turn, as a baseline
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TrackingBenchmark {
+
+    private static final int READS = 1 << 16;
+
+    @Param({"100", "1000", "10000"})
+    public int population;
+
+    // number of tracking sessions
+    @Param({"1", "10", "100"})
+    public int sessions;
+
+    // number of epc's tracked by each session
+    @Param({"10", "100"})
+    public int tracked;
+
+    private TagInfo[] reads;
+    private ZebraTracking tracking;
+    private HashSet<String>[] sets;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void generate() {
+        reads = Reads.generate(population, READS, 1);
+        String[] epcs = Reads.epcs(reads);
+
+        // sessions take consecutive slices of the population, wrapping so later sessions overlap
+        tracking = new ZebraTracking();
+        sets = new HashSet[sessions];
+        for (int i = 0; i < sessions; i++) {
+            HashSet<String> set = new HashSet<>();
+            for (int j = 0; j < Math.min(tracked, epcs.length); j++) set.add(epcs[(i * tracked + j) % epcs.length]);
+            tracking.start("session" + i, set, ZebraDevice.Notifies.change);
+            sets[i] = set;
+        }
+    }
+
+    @Benchmark
+    public ZebraTracking.Session[] match() {
+        return tracking.match(reads[next++ & (READS - 1)].epc);
+    }
+
+    @Benchmark
+    public int sets() {
+        String epc = reads[next++ & (READS - 1)].epc;
+        int matched = 0;
+        for (HashSet<String> set : sets) if (set.contains(epc)) matched++;
+        return matched;
+    }
+}
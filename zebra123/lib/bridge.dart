@@ -1,8 +1,12 @@
+import 'dart:developer' show Timeline;
+
 import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
 import 'package:zebra123/zebra123.dart';
 
+import 'epc.dart';
 import 'helpers.dart';
+import 'ring.dart';
 
 /// bridge between flutter and android.
 class Bridge {
@@ -14,6 +18,29 @@ class Bridge {
 
   final List<Zebra123> _listeners = [];
 
+  // us from the report leaving the event channel to reaching the bridge,
+  // and from the oldest read of the report to the listeners returning
+  final _dispatch = _Latencies();
+  final _total = _Latencies();
+
+  // true when rfid reports are flow controlled. a credit is returned for
+  // every report once its listeners return
+  bool _flow = false;
+
+  // tag records shared with native. null when tags are passed as maps
+  TagRing? _ring;
+
+  // stream and number of the last rfid report. a report that doesn't follow
+  // on from it means reports were lost, and a snapshot is requested
+  int? _stream;
+  int _sequence = 0;
+
+  // the listener that started each tracking session
+  final Map<String, Zebra123> _sessions = {};
+
+  // epc lists this long are encoded, as native does
+  static const int _minPacked = 16;
+
   final List<Interfaces> _supported = [];
   bool supports(Interfaces interface) => _supported.contains(interface);
 
@@ -45,6 +72,16 @@ class Bridge {
 
     // listen for events
     _eventChannel.receiveBroadcastStream().listen(_eventListener);
+
+    // barcode, rfid and metrics events have their own channels, so a large
+    // tag report never delays a barcode or status event
+    for (var name in [
+      "dev.fml.zebra123/event/barcode",
+      "dev.fml.zebra123/event/rfid",
+      "dev.fml.zebra123/event/metrics"
+    ]) {
+      EventChannel(name).receiveBroadcastStream().listen(_eventListener);
+    }
   }
 
   // returns true is specified listener is ion the _listener list
@@ -57,11 +94,15 @@ class Bridge {
     }
   }
 
-  // stop listening to zebra events
+  // stop listening to zebra events. the listener's tracking sessions stop
   void removeListener(Zebra123 listener) {
     if (contains(listener)) {
       _listeners.remove(listener);
     }
+    var names = _sessions.keys.where((name) => _sessions[name] == listener);
+    for (var name in names.toList()) {
+      session(listener, Requests.stop, name);
+    }
   }
 
   // set device mode
@@ -69,23 +110,334 @@ class Bridge {
     _methodChannel.invokeMethod("mode", {"mode": fromEnum(mode)});
   }
 
-  // invoke scan request
-  void scan(Requests request) {
-    _methodChannel.invokeMethod("scan", {"request": fromEnum(request)});
+  // invoke scan request. the reader ends the scan itself on a [stop] condition
+  void scan(Requests request, {StopCondition? stop}) {
+    _methodChannel.invokeMethod(
+        "scan", {"request": fromEnum(request), ...?stop?.toMap()});
+  }
+
+  // starts or stops a named tracking session. its tags are reported to the
+  // listener that started it. returns the sessions running
+  Future<List<TrackingSession>?> session(
+      Zebra123 listener, Requests request, String name,
+      {List<String>? tags, Notifies? notify}) async {
+    try {
+      if (request == Requests.start) _sessions[name] = listener;
+      if (request == Requests.stop) _sessions.remove(name);
+      var result = await _methodChannel.invokeMethod("session", {
+        "request": fromEnum(request),
+        "name": name,
+        "notify": fromEnum(notify ?? Notifies.change),
+        ..._epcs(tags)
+      });
+      if (result is! Map) return null;
+      List<TrackingSession> list = [];
+      for (var session in result["sessions"] ?? []) {
+        list.add(TrackingSession.fromMap(Map<String, dynamic>.from(session)));
+      }
+      return list;
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
   }
 
   // invoke tracking request
   void track(Requests request, {List<String>? tags}) {
-    String list = "";
-    for (var tag in tags ?? []) {
-      if (list == "") {
-        list = tag;
-      } else {
-        list += ",$tag";
+    _methodChannel.invokeMethod(
+        "track", {"request": fromEnum(request), ..._epcs(tags)});
+  }
+
+  // invoke gtin aggregation request
+  void aggregate(Requests request, {int? interval}) {
+    _methodChannel.invokeMethod("aggregate",
+        {"request": fromEnum(request), "interval": interval ?? 0});
+  }
+
+  // invoke manifest reconciliation request
+  void manifest(Requests request,
+      {List<String>? tags, bool? autoStop, int? interval}) {
+    _methodChannel.invokeMethod("manifest", {
+      "request": fromEnum(request),
+      ..._epcs(tags),
+      "autoStop": autoStop ?? false,
+      "interval": interval ?? 0
+    });
+  }
+
+  // large epc lists are sorted and encoded, the rest are sent comma separated
+  static Map<String, dynamic> _epcs(List<String>? tags) {
+    tags ??= [];
+    if (tags.length < _minPacked) return {"tags": tags.join(",")};
+    var sorted = List<String>.from(tags)..sort();
+    return {"tags": "", "epcs": EpcCodec.encode(sorted)};
+  }
+
+  // tag maps in a report, with their epcs restored if native encoded them
+  static List<Map<String, dynamic>> _tags(Map<dynamic, dynamic> map) {
+    List<Map<String, dynamic>> list = [];
+    for (var tag in map["tags"] ?? []) {
+      list.add(Map<String, dynamic>.from(tag));
+    }
+
+    var packed = map["epcs"];
+    if (packed is Uint8List) {
+      var epcs = EpcCodec.decode(packed);
+      for (var i = 0; i < list.length && i < epcs.length; i++) {
+        list[i]["epc"] = epcs[i];
       }
     }
-    _methodChannel
-        .invokeMethod("track", {"request": fromEnum(request), "tags": list});
+    return list;
+  }
+
+  // set the read statistics included in rfid reports
+  void statistics(List<Statistics> fields) {
+    _methodChannel.invokeMethod(
+        "statistics", {"fields": fields.map((f) => fromEnum(f)).join(",")});
+  }
+
+  // invoke nearest tags request
+  void nearest(Requests request, {int? size, int? interval}) {
+    _methodChannel.invokeMethod("nearest", {
+      "request": fromEnum(request),
+      "size": size ?? 0,
+      "interval": interval ?? 0
+    });
+  }
+
+  // invoke unique tag estimation request
+  void estimate(Requests request, {bool? perAntenna, int? bucket}) {
+    _methodChannel.invokeMethod("estimate", {
+      "request": fromEnum(request),
+      "perAntenna": perAntenna ?? false,
+      "bucket": bucket ?? 0
+    });
+  }
+
+  // returns the unique tag sketch, optionally merging another sketch into it first
+  Future<UniqueEstimate?> sketch({Uint8List? merge}) async {
+    try {
+      var result = await _methodChannel.invokeMethod("sketch", {"merge": merge});
+      if (result == null) return null;
+      return UniqueEstimate.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // sets and/or returns the native tag store memory budget
+  Future<MemoryBudget?> budget({int? bytes}) async {
+    try {
+      var result =
+          await _methodChannel.invokeMethod("budget", {"bytes": bytes ?? -1});
+      if (result == null) return null;
+      return MemoryBudget.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // invoke recording request. returns the recording started or stopped
+  Future<Recording?> record(Requests request, {String? file}) async {
+    try {
+      var result = await _methodChannel.invokeMethod(
+          "record", {"request": fromEnum(request), "file": file ?? ""});
+      if (result == null) return null;
+      return Recording.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // invoke replay request
+  void replay(Requests request, {String? file, double? speed}) {
+    _methodChannel.invokeMethod("replay", {
+      "request": fromEnum(request),
+      "file": file ?? "",
+      "speed": speed ?? 1
+    });
+  }
+
+  // returns the native metrics, optionally resetting them
+  Future<Metrics?> stats({bool? reset}) async {
+    try {
+      var result =
+          await _methodChannel.invokeMethod("stats", {"reset": reset ?? false});
+      if (result == null) return null;
+      return Metrics.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // invoke periodic metrics request
+  void metrics(Requests request, {int? interval}) {
+    _methodChannel.invokeMethod("metrics",
+        {"request": fromEnum(request), "interval": interval ?? 0});
+  }
+
+  // sets the ms between native event deliveries. 0 delivers once per frame.
+  // returns the interval in effect
+  Future<int?> delivery({int? interval}) async {
+    try {
+      var result = await _methodChannel
+          .invokeMethod("delivery", {"interval": interval ?? -1});
+      return result is int ? result : null;
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // starts or stops the native service that keeps the device reading in the
+  // background. returns true if the service is running
+  Future<bool> background(Requests request,
+      {String? title, String? text}) async {
+    try {
+      var result = await _methodChannel.invokeMethod("background",
+          {"request": fromEnum(request), "title": title, "text": text});
+      return result == true;
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return false;
+    }
+  }
+
+  // starts or stops credit based flow control of rfid reports
+  Future<FlowControl?> flow(Requests request,
+      {int? credits, Overflows? overflow, int? limit}) async {
+    try {
+      _flow = request == Requests.start;
+      var result = await _methodChannel.invokeMethod("flow", {
+        "request": fromEnum(request),
+        "credits": credits ?? 0,
+        "overflow": fromEnum(overflow ?? Overflows.merge),
+        "limit": limit ?? 0
+      });
+      if (result == null) return null;
+      return FlowControl.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // starts, stops or, with any other request, returns the native read filter
+  Future<FilterStatistics?> filter(Requests request,
+      {ReadFilter? spec}) async {
+    try {
+      var result = await _methodChannel.invokeMethod("filter",
+          {"request": fromEnum(request), ...(spec ?? ReadFilter()).toMap()});
+      if (result == null) return null;
+      return FilterStatistics.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // invoke duty cycle request
+  Future<DutyCycleStatus?> cycle(Requests request, {DutyCycle? cycle}) async {
+    try {
+      var result = await _methodChannel.invokeMethod("cycle",
+          {"request": fromEnum(request), ...(cycle ?? DutyCycle()).toMap()});
+      if (result == null) return null;
+      return DutyCycleStatus.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // sets the trigger debounce and minimum run ms. null leaves a setting as is
+  Future<TriggerStatistics?> trigger({int? debounce, int? minimum}) async {
+    try {
+      var result = await _methodChannel.invokeMethod("trigger",
+          {"debounce": debounce ?? -1, "minimum": minimum ?? -1});
+      if (result == null) return null;
+      return TriggerStatistics.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // sets the events and tags this engine gets from the shared device
+  Future<Subscription?> subscribe(
+      {List<Events>? events, List<String>? prefixes}) async {
+    try {
+      var result = await _methodChannel.invokeMethod("subscribe", {
+        "events": (events ?? []).map((event) => fromEnum(event)).join(","),
+        "prefixes": (prefixes ?? []).join(",")
+      });
+      if (result == null) return null;
+      return Subscription.fromMap(Map<String, dynamic>.from(result));
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
+  // grants credit for more rfid reports
+  void credit(int credits) {
+    _methodChannel.invokeMethod("credit", {"credits": credits});
+  }
+
+  // starts or stops passing rfid tags through the shared ring. returns true
+  // if the ring is in use
+  Future<bool> transport(Requests request, {int? capacity}) async {
+    try {
+      var result = await _methodChannel.invokeMethod("transport",
+          {"request": fromEnum(request), "capacity": capacity ?? 0});
+      _ring?.close();
+      _ring = null;
+      if (result is Map) {
+        _ring = TagRing.open(result["file"], result["length"]);
+
+        // tags stay maps if the ring can't be mapped
+        if (_ring == null) {
+          await _methodChannel
+              .invokeMethod("transport", {"request": fromEnum(Requests.stop)});
+        }
+      }
+      return _ring != null;
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return false;
+    }
+  }
+
+  // leave rfid tags whose antenna and rssi are unchanged out of reports
+  void delta(bool enabled) {
+    _methodChannel.invokeMethod("delta", {"enabled": enabled});
+  }
+
+  // request a snapshot of every tag in the native store
+  void resync() {
+    _methodChannel.invokeMethod("resync");
+  }
+
+  // query the native tag store
+  Future<TagQuery?> query(Queries query,
+      {int? offset, int? limit, Sorts? sort, String? prefix}) async {
+    try {
+      var result = await _methodChannel.invokeMethod("query", {
+        "query": fromEnum(query),
+        "offset": offset ?? 0,
+        "limit": limit ?? 0,
+        "sort": fromEnum(sort ?? Sorts.lastSeen),
+        "prefix": prefix ?? ""
+      });
+      if (result == null) return null;
+      return TagQuery.fromMap(Map<String, dynamic>.from(result), _interface);
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
   }
 
   // invoke write request
@@ -100,8 +452,29 @@ class Bridge {
     });
   }
 
+  // returns the per stage latency of rfid reports, optionally resetting it
+  Future<PipelineTrace?> trace({bool? reset}) async {
+    try {
+      var result =
+          await _methodChannel.invokeMethod("trace", {"reset": reset ?? false});
+      if (result == null) return null;
+      var trace = PipelineTrace.fromMap(Map<String, dynamic>.from(result));
+      trace.stages["dispatch"] = _dispatch.toHistogram();
+      trace.stages["total"] = _total.toHistogram();
+      if (reset ?? false) {
+        _dispatch.clear();
+        _total.clear();
+      }
+      return trace;
+    } catch (e) {
+      if (kDebugMode) print(e);
+      return null;
+    }
+  }
+
   // zebra events listener
   void _eventListener(dynamic payload) {
+    final received = DateTime.now().microsecondsSinceEpoch;
     try {
       final map = Map<String, dynamic>.from(payload);
       _interface =
@@ -110,15 +483,109 @@ class Bridge {
           toEnum(map['eventName'] as String, Events.values) ?? Events.unknown;
 
       switch (event) {
+        // events coalesced into a single delivery
+        case Events.batch:
+          List<dynamic> events = map["events"];
+          for (var i = 0; i < events.length; i++) {
+            _eventListener(events[i]);
+          }
+          break;
+
         case Events.readRfid:
           List<RfidTag> list = [];
-          List<dynamic> tags = map["tags"];
-          for (var i = 0; i < tags.length; i++) {
-            var tag = Map<String, dynamic>.from(tags[i]);
+
+          // request a snapshot if reports were lost
+          var stream = map["stream"];
+          var first = map["first"];
+          var sequence = map["sequence"];
+          if (stream is int && first is int && sequence is int) {
+            if (stream == _stream && first != _sequence + 1) resync();
+            _stream = stream;
+            _sequence = sequence;
+          }
+
+          // tags passed through the shared ring
+          var ring = map["ring"];
+          if (ring is Map && _ring != null) {
+            List<Statistics> statistics = [];
+            for (var field in ring["statistics"] ?? []) {
+              var statistic = toEnum(field as String, Statistics.values);
+              if (statistic != null) statistics.add(statistic);
+            }
+            list.addAll(
+                _ring!.read(ring["from"], ring["to"], statistics, _interface));
+          }
+
+          for (var tag in _tags(map)) {
             tag["eventSource"] = fromEnum(_interface);
             list.add(RfidTag.fromMap(tag));
           }
 
+          // notify listeners
+          Timeline.startSync("zebra123.dispatch");
+          for (var listener in _listeners) {
+            listener.callback(_interface, event, list);
+          }
+          Timeline.finishSync();
+
+          // the report is processed, so native may send another
+          if (_flow) credit(1);
+
+          // measure the latency of the report
+          var stamps = map["trace"];
+          if (stamps is Map) {
+            var sent = stamps["sent"];
+            var read = stamps["read"];
+            if (sent is int) _dispatch.add(received - sent);
+            if (read is int) {
+              _total.add(DateTime.now().microsecondsSinceEpoch - read);
+            }
+          }
+
+          break;
+
+        case Events.rfidSnapshot:
+          List<RfidTag> list = [];
+          for (var tag in _tags(map)) {
+            tag["eventSource"] = fromEnum(_interface);
+            list.add(RfidTag.fromMap(tag));
+          }
+
+          // reports follow on from the snapshot
+          _stream = map["stream"];
+          _sequence = map["sequence"] ?? 0;
+
+          // notify listeners
+          for (var listener in _listeners) {
+            listener.callback(_interface, event, list);
+          }
+
+          break;
+
+        case Events.trackedTags:
+          var name = map["session"] ?? "";
+          List<RfidTag> list = [];
+          for (var tag in _tags(map)) {
+            tag["eventSource"] = fromEnum(_interface);
+            list.add(RfidTag.fromMap(tag));
+          }
+
+          // notify the listener that started the session
+          var listener = _sessions[name];
+          if (listener != null && contains(listener)) {
+            listener.callback(
+                _interface, event, TrackedTags(session: name, tags: list));
+          }
+
+          break;
+
+        case Events.readGtin:
+          List<GtinCount> list = [];
+          List<dynamic> gtins = map["gtins"];
+          for (var i = 0; i < gtins.length; i++) {
+            list.add(GtinCount.fromMap(Map<String, dynamic>.from(gtins[i])));
+          }
+
           // notify listeners
           for (var listener in _listeners) {
             listener.callback(_interface, event, list);
@@ -126,6 +593,60 @@ class Bridge {
 
           break;
 
+        case Events.manifestProgress:
+          var progress = ManifestProgress.fromMap(map);
+
+          // notify listeners
+          for (var listener in _listeners) {
+            listener.callback(_interface, event, progress);
+          }
+
+          break;
+
+        case Events.nearestTags:
+          List<NearestTag> list = [];
+          List<dynamic> tags = map["tags"];
+          for (var i = 0; i < tags.length; i++) {
+            list.add(NearestTag.fromMap(Map<String, dynamic>.from(tags[i])));
+          }
+
+          // notify listeners
+          for (var listener in _listeners) {
+            listener.callback(_interface, event, list);
+          }
+
+          break;
+
+        case Events.estimate:
+          var estimate = UniqueEstimate.fromMap(map);
+
+          // notify listeners
+          for (var listener in _listeners) {
+            listener.callback(_interface, event, estimate);
+          }
+
+          break;
+
+        case Events.stopRead:
+          var stopped = ReadStopped.fromMap(map);
+
+          // notify listeners
+          for (var listener in _listeners) {
+            listener.callback(_interface, event, stopped);
+          }
+
+          break;
+
+        case Events.metrics:
+          var metrics = Metrics.fromMap(map);
+
+          // notify listeners
+          for (var listener in _listeners) {
+            listener.callback(_interface, event, metrics);
+          }
+
+          break;
+
         case Events.readBarcode:
           List<Barcode> list = [];
           var tag = Barcode.fromMap(map);
@@ -185,6 +706,17 @@ class Bridge {
           var connection = ConnectionStatus.fromMap(map);
           _status = connection.status;
 
+          // the device was connected by another engine or kept reading in
+          // the background. the shared ring was stopped, and a snapshot
+          // hands over its tags
+          if (connection.shared) {
+            _flow = false;
+            _ring?.close();
+            _ring = null;
+            _stream = null;
+            resync();
+          }
+
           // notify listeners
           for (var listener in _listeners) {
             listener.callback(_interface, event, connection);
@@ -205,3 +737,46 @@ class Bridge {
     }
   }
 }
+
+/// holds the most recent latency samples in us
+class _Latencies {
+  static const int _size = 1024;
+
+  final List<int> _samples = [];
+  int _next = 0;
+  int _count = 0;
+
+  void add(int sample) {
+    if (sample < 0) sample = 0;
+    if (_samples.length < _size) {
+      _samples.add(sample);
+    } else {
+      _samples[_next] = sample;
+    }
+    _next = (_next + 1) % _size;
+    _count++;
+  }
+
+  void clear() {
+    _samples.clear();
+    _next = 0;
+    _count = 0;
+  }
+
+  // percentiles are taken over the most recent samples
+  MetricHistogram toHistogram() {
+    if (_samples.isEmpty) {
+      return MetricHistogram(count: 0, mean: 0, p50: 0, p90: 0, p99: 0, max: 0);
+    }
+    var sorted = List<int>.from(_samples)..sort();
+    int at(double p) =>
+        sorted[((sorted.length * p).ceil() - 1).clamp(0, sorted.length - 1)];
+    return MetricHistogram(
+        count: _count,
+        mean: sorted.reduce((a, b) => a + b) / sorted.length,
+        p50: at(0.5),
+        p90: at(0.9),
+        p99: at(0.99),
+        max: sorted.last);
+  }
+}
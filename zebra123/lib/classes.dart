@@ -1,3 +1,5 @@
+import 'dart:typed_data';
+
 import 'enums.dart';
 import 'helpers.dart';
 
@@ -37,6 +39,16 @@ class RfidTag {
   int size;
   String seen;
 
+  // read statistics. only set when requested using setStatistics()
+  int? reads;
+  DateTime? firstSeen;
+  DateTime? lastSeen;
+  int? rssiMin;
+  int? rssiMax;
+  double? rssiMean;
+  Map<int, int>? antennas;
+  double? rate;
+
   // required for write operation
   String? epcNew;
   String? password;
@@ -53,10 +65,27 @@ class RfidTag {
       required this.lockData,
       required this.size,
       required this.seen,
-      required this.interface});
+      required this.interface,
+      this.reads,
+      this.firstSeen,
+      this.lastSeen,
+      this.rssiMin,
+      this.rssiMax,
+      this.rssiMean,
+      this.antennas,
+      this.rate});
 
   // create a rfid tag from a map
   factory RfidTag.fromMap(Map<String, dynamic> map) {
+    Map<int, int>? antennas;
+    var reads = map['antennas'];
+    if (reads is Map) {
+      antennas = {};
+      reads.forEach((key, value) {
+        var antenna = int.tryParse(key.toString());
+        if (antenna != null) antennas![antenna] = value?.toInt() ?? 0;
+      });
+    }
     return RfidTag(
       epc: map['epc'] ?? '',
       antenna: map['antenna']?.toInt() ?? 0,
@@ -68,22 +97,791 @@ class RfidTag {
       seen: map['seen'] ?? '',
       interface:
           toEnum(map['eventSource'], Interfaces.values) ?? Interfaces.unknown,
+      reads: map['reads']?.toInt(),
+      firstSeen: toDate(map['firstSeen']),
+      lastSeen: toDate(map['lastSeen']),
+      rssiMin: map['rssiMin']?.toInt(),
+      rssiMax: map['rssiMax']?.toInt(),
+      rssiMean: map['rssiMean']?.toDouble(),
+      antennas: antennas,
+      rate: map['rate']?.toDouble(),
+    );
+  }
+}
+
+/// gtin count class holds the unique tag count for a product
+class GtinCount {
+  String gtin;
+  int count;
+  int delta;
+  Map<int, int> antennas;
+
+  GtinCount(
+      {required this.gtin,
+      required this.count,
+      required this.delta,
+      required this.antennas});
+
+  // create a gtin count from a map
+  factory GtinCount.fromMap(Map<String, dynamic> map) {
+    Map<int, int> antennas = {};
+    var zones = map['antennas'];
+    if (zones is Map) {
+      zones.forEach((key, value) {
+        var antenna = int.tryParse(key.toString());
+        if (antenna != null) antennas[antenna] = value?.toInt() ?? 0;
+      });
+    }
+    return GtinCount(
+      gtin: map['gtin'] ?? '',
+      count: map['count']?.toInt() ?? 0,
+      delta: map['delta']?.toInt() ?? 0,
+      antennas: antennas,
+    );
+  }
+}
+
+/// manifest progress class holds the reconciliation of reads against a manifest
+class ManifestProgress {
+  int expected;
+  int found;
+  int missing;
+  int unexpected;
+  bool complete;
+  bool last;
+
+  // tags found or unexpected since the previous progress event
+  List<String> foundTags;
+  List<String> unexpectedTags;
+
+  // only reported on the last progress event
+  List<String> missingTags;
+
+  ManifestProgress(
+      {required this.expected,
+      required this.found,
+      required this.missing,
+      required this.unexpected,
+      required this.complete,
+      required this.last,
+      required this.foundTags,
+      required this.unexpectedTags,
+      required this.missingTags});
+
+  // create a manifest progress from a map
+  factory ManifestProgress.fromMap(Map<String, dynamic> map) {
+    return ManifestProgress(
+      expected: map['expected']?.toInt() ?? 0,
+      found: map['found']?.toInt() ?? 0,
+      missing: map['missing']?.toInt() ?? 0,
+      unexpected: map['unexpected']?.toInt() ?? 0,
+      complete: toBool(map['complete']) ?? false,
+      last: toBool(map['final']) ?? false,
+      foundTags: List<String>.from(map['foundTags'] ?? []),
+      unexpectedTags: List<String>.from(map['unexpectedTags'] ?? []),
+      missingTags: List<String>.from(map['missingTags'] ?? []),
+    );
+  }
+}
+
+/// nearest tag class holds one of the strongest tags by smoothed rssi
+class NearestTag {
+  String epc;
+  double rssi;
+  DateTime? lastSeen;
+
+  NearestTag({required this.epc, required this.rssi, this.lastSeen});
+
+  // create a nearest tag from a map
+  factory NearestTag.fromMap(Map<String, dynamic> map) {
+    return NearestTag(
+      epc: map['epc'] ?? '',
+      rssi: map['rssi']?.toDouble() ?? 0,
+      lastSeen: toDate(map['lastSeen']),
+    );
+  }
+}
+
+/// unique estimate class holds the estimated number of unique tags read
+class UniqueEstimate {
+  int estimate;
+
+  // relative standard error of the estimate
+  double error;
+
+  // 95% confidence interval
+  int low;
+  int high;
+
+  // time bucket, when estimating per time bucket
+  DateTime? start;
+  DateTime? end;
+
+  // sketch registers. only returned by getSketch() and used to merge sketches
+  Uint8List? registers;
+
+  // estimates per antenna and per time bucket
+  Map<int, UniqueEstimate> antennas;
+  List<UniqueEstimate> buckets;
+
+  UniqueEstimate(
+      {required this.estimate,
+      required this.error,
+      required this.low,
+      required this.high,
+      this.start,
+      this.end,
+      this.registers,
+      this.antennas = const {},
+      this.buckets = const []});
+
+  // create a unique estimate from a map
+  factory UniqueEstimate.fromMap(Map<String, dynamic> map) {
+    Map<int, UniqueEstimate> antennas = {};
+    var list = map['antennas'];
+    if (list is Map) {
+      list.forEach((key, value) {
+        var antenna = int.tryParse(key.toString());
+        if (antenna != null) {
+          antennas[antenna] =
+              UniqueEstimate.fromMap(Map<String, dynamic>.from(value));
+        }
+      });
+    }
+    List<UniqueEstimate> buckets = [];
+    for (var bucket in (map['buckets'] ?? [])) {
+      buckets.add(UniqueEstimate.fromMap(Map<String, dynamic>.from(bucket)));
+    }
+    var registers = map['registers'];
+    return UniqueEstimate(
+      estimate: map['estimate']?.toInt() ?? 0,
+      error: map['error']?.toDouble() ?? 0,
+      low: map['low']?.toInt() ?? 0,
+      high: map['high']?.toInt() ?? 0,
+      start: toDate(map['start']),
+      end: toDate(map['end']),
+      registers: registers is Uint8List ? registers : null,
+      antennas: antennas,
+      buckets: buckets,
+    );
+  }
+}
+
+/// memory budget class holds the native tag store memory budget and usage
+class MemoryBudget {
+  // budget in bytes. 0 is unlimited
+  int budget;
+
+  // estimated bytes used by the tags in memory
+  int usage;
+
+  // tags in memory and spilled to disk
+  int memory;
+  int spilled;
+
+  // spill runs on disk and number of spills
+  int runs;
+  int spills;
+
+  MemoryBudget(
+      {required this.budget,
+      required this.usage,
+      required this.memory,
+      required this.spilled,
+      required this.runs,
+      required this.spills});
+
+  // create a memory budget from a map
+  factory MemoryBudget.fromMap(Map<String, dynamic> map) {
+    return MemoryBudget(
+      budget: map['budget']?.toInt() ?? 0,
+      usage: map['usage']?.toInt() ?? 0,
+      memory: map['memory']?.toInt() ?? 0,
+      spilled: map['spilled']?.toInt() ?? 0,
+      runs: map['runs']?.toInt() ?? 0,
+      spills: map['spills']?.toInt() ?? 0,
+    );
+  }
+}
+
+/// recording class describes a recording of reader events
+class Recording {
+  // path of the recording file
+  String file;
+
+  // number of records and size of the file in bytes
+  int records;
+  int bytes;
+
+  Recording({required this.file, required this.records, required this.bytes});
+
+  // create a recording from a map
+  factory Recording.fromMap(Map<String, dynamic> map) {
+    return Recording(
+      file: map['file'] ?? '',
+      records: map['records']?.toInt() ?? 0,
+      bytes: map['bytes']?.toInt() ?? 0,
+    );
+  }
+}
+
+/// metric counter class. [rate] is per second since the previous snapshot
+class MetricCounter {
+  int count;
+  double rate;
+
+  MetricCounter({required this.count, required this.rate});
+
+  // create a counter from a map
+  factory MetricCounter.fromMap(dynamic map) {
+    if (map is! Map) return MetricCounter(count: 0, rate: 0);
+    return MetricCounter(
+      count: map['count']?.toInt() ?? 0,
+      rate: map['rate']?.toDouble() ?? 0,
+    );
+  }
+}
+
+/// metric histogram class
+class MetricHistogram {
+  int count;
+  double mean;
+  int p50;
+  int p90;
+  int p99;
+  int max;
+
+  MetricHistogram(
+      {required this.count,
+      required this.mean,
+      required this.p50,
+      required this.p90,
+      required this.p99,
+      required this.max});
+
+  // create a histogram from a map
+  factory MetricHistogram.fromMap(dynamic map) {
+    if (map is! Map) {
+      return MetricHistogram(count: 0, mean: 0, p50: 0, p90: 0, p99: 0, max: 0);
+    }
+    return MetricHistogram(
+      count: map['count']?.toInt() ?? 0,
+      mean: map['mean']?.toDouble() ?? 0,
+      p50: map['p50']?.toInt() ?? 0,
+      p90: map['p90']?.toInt() ?? 0,
+      p99: map['p99']?.toInt() ?? 0,
+      max: map['max']?.toInt() ?? 0,
+    );
+  }
+}
+
+/// metrics class holds the native read path metrics
+class Metrics {
+  // ms since the plugin was loaded and since the previous snapshot
+  int uptime;
+  int interval;
+
+  // rfid reads, first reads of a tag and barcode reads
+  MetricCounter reads;
+  MetricCounter unique;
+  MetricCounter barcodes;
+
+  // events sent to flutter, events dropped and method calls
+  MetricCounter events;
+  MetricCounter dropped;
+  MetricCounter methods;
+
+  // events merged into a pending event they superseded
+  MetricCounter merged;
+
+  // rfid reads rejected by the native read filter
+  MetricCounter filtered;
+
+  // rfid reports held back for lack of credit, and held back tags dropped
+  // or spilled by the overflow policy
+  MetricCounter stalled;
+  MetricCounter overflowed;
+
+  // events waiting on the main thread, and the most that have waited
+  int queue;
+  int queueMax;
+
+  // us events wait on the main thread
+  MetricHistogram postWait;
+
+  // tags per rfid report
+  MetricHistogram batch;
+
+  // us spent handling a method call
+  MetricHistogram methodTime;
+
+  // us from a trigger press to the first tag read
+  MetricHistogram firstRead;
+
+  Metrics(
+      {required this.uptime,
+      required this.interval,
+      required this.reads,
+      required this.unique,
+      required this.barcodes,
+      required this.events,
+      required this.dropped,
+      required this.methods,
+      required this.merged,
+      required this.filtered,
+      required this.stalled,
+      required this.overflowed,
+      required this.queue,
+      required this.queueMax,
+      required this.postWait,
+      required this.batch,
+      required this.methodTime,
+      required this.firstRead});
+
+  // create metrics from a map
+  factory Metrics.fromMap(Map<String, dynamic> map) {
+    var queue = map['queue'] is Map ? map['queue'] : {};
+    return Metrics(
+      uptime: map['uptime']?.toInt() ?? 0,
+      interval: map['interval']?.toInt() ?? 0,
+      reads: MetricCounter.fromMap(map['reads']),
+      unique: MetricCounter.fromMap(map['unique']),
+      barcodes: MetricCounter.fromMap(map['barcodes']),
+      events: MetricCounter.fromMap(map['events']),
+      dropped: MetricCounter.fromMap(map['dropped']),
+      methods: MetricCounter.fromMap(map['methods']),
+      merged: MetricCounter.fromMap(map['merged']),
+      filtered: MetricCounter.fromMap(map['filtered']),
+      stalled: MetricCounter.fromMap(map['stalled']),
+      overflowed: MetricCounter.fromMap(map['overflowed']),
+      queue: queue['value']?.toInt() ?? 0,
+      queueMax: queue['max']?.toInt() ?? 0,
+      postWait: MetricHistogram.fromMap(map['postWait']),
+      batch: MetricHistogram.fromMap(map['batch']),
+      methodTime: MetricHistogram.fromMap(map['methodTime']),
+      firstRead: MetricHistogram.fromMap(map['firstRead']),
+    );
+  }
+}
+
+/// flow control class holds the credit based flow control of rfid reports
+class FlowControl {
+  // true when every rfid report takes a credit
+  bool enabled;
+
+  // reports native can send before flutter grants more credit
+  int credits;
+
+  // what happens to the tags held back while there is no credit, and how
+  // many are held before it applies. a limit of 0 holds them all
+  Overflows overflow;
+  int limit;
+
+  FlowControl(
+      {required this.enabled,
+      required this.credits,
+      required this.overflow,
+      required this.limit});
+
+  // create a flow control from a map
+  factory FlowControl.fromMap(Map<String, dynamic> map) {
+    return FlowControl(
+      enabled: toBool(map['enabled']) ?? false,
+      credits: map['credits']?.toInt() ?? 0,
+      overflow: toEnum(map['overflow'] as String?, Overflows.values) ??
+          Overflows.merge,
+      limit: map['limit']?.toInt() ?? 0,
+    );
+  }
+}
+
+/// stop condition class holds the condition the reader ends a scan on,
+/// without a stop from flutter
+class StopCondition {
+  Stops type;
+
+  // tags or inventory rounds to stop after
+  int count;
+
+  // ms after which the scan ends regardless. 0 for no timeout
+  int timeout;
+
+  StopCondition({required this.type, this.count = 0, this.timeout = 0});
+
+  // the scan runs for [duration] ms
+  factory StopCondition.duration(int duration) =>
+      StopCondition(type: Stops.duration, timeout: duration);
+
+  // the scan ends once [tags] tags are read, or after [timeout] ms
+  factory StopCondition.tags(int tags, {int timeout = 0}) =>
+      StopCondition(type: Stops.tags, count: tags, timeout: timeout);
+
+  // the scan ends after [attempts] inventory rounds, or after [timeout] ms
+  factory StopCondition.attempts(int attempts, {int timeout = 0}) =>
+      StopCondition(type: Stops.attempts, count: attempts, timeout: timeout);
+
+  // create a stop condition from a map
+  static StopCondition? fromMap(dynamic map) {
+    if (map is! Map) return null;
+    var type = toEnum(map['type'] as String?, Stops.values);
+    if (type == null) return null;
+    return StopCondition(
+      type: type,
+      count: map['count']?.toInt() ?? 0,
+      timeout: map['timeout']?.toInt() ?? 0,
+    );
+  }
+
+  // create the method call arguments
+  Map<String, dynamic> toMap() {
+    return {"stop": fromEnum(type), "count": count, "timeout": timeout};
+  }
+}
+
+/// duty cycle class holds the windows of a duty cycled scan. the reader
+/// reads for [duty] % of each [period] ms, backing off towards [minimum] %
+/// as the sled warms from [warm] to [hot] degrees celsius, and to [minimum] %
+/// when the battery falls to [battery] % and isn't charging
+class DutyCycle {
+  int period;
+  int duty;
+  int minimum;
+  int warm;
+  int hot;
+  int battery;
+
+  DutyCycle(
+      {this.period = 2000,
+      this.duty = 50,
+      this.minimum = 10,
+      this.warm = 45,
+      this.hot = 60,
+      this.battery = 20});
+
+  // create the method call arguments
+  Map<String, dynamic> toMap() {
+    return {
+      "period": period,
+      "duty": duty,
+      "minimum": minimum,
+      "warm": warm,
+      "hot": hot,
+      "battery": battery
+    };
+  }
+}
+
+/// duty cycle status class holds the state of a duty cycled scan
+class DutyCycleStatus {
+  bool running;
+  int period;
+  int duty;
+  int minimum;
+
+  // % of the current period spent reading
+  int current;
+
+  // the latest temperature and battery of the reader. null until it answers
+  int? temperature;
+  int? battery;
+  bool charging;
+
+  // windows run, and ms spent reading and idle
+  int windows;
+  int reading;
+  int idle;
+
+  DutyCycleStatus(
+      {required this.running,
+      required this.period,
+      required this.duty,
+      required this.minimum,
+      required this.current,
+      this.temperature,
+      this.battery,
+      required this.charging,
+      required this.windows,
+      required this.reading,
+      required this.idle});
+
+  // create a duty cycle status from a map
+  factory DutyCycleStatus.fromMap(Map<String, dynamic> map) {
+    return DutyCycleStatus(
+      running: toBool(map['running']) ?? false,
+      period: map['period']?.toInt() ?? 0,
+      duty: map['duty']?.toInt() ?? 0,
+      minimum: map['minimum']?.toInt() ?? 0,
+      current: map['current']?.toInt() ?? 0,
+      temperature: map['temperature']?.toInt(),
+      battery: map['battery']?.toInt(),
+      charging: toBool(map['charging']) ?? false,
+      windows: map['windows']?.toInt() ?? 0,
+      reading: map['reading']?.toInt() ?? 0,
+      idle: map['idle']?.toInt() ?? 0,
+    );
+  }
+}
+
+/// read stopped class holds the end of a scan
+class ReadStopped {
+  // the condition the reader ended the scan on. null when it was stopped
+  StopCondition? stop;
+
+  // tags held in the native store
+  int total;
+
+  ReadStopped({this.stop, required this.total});
+
+  // create a read stopped from a map
+  factory ReadStopped.fromMap(Map<String, dynamic> map) {
+    return ReadStopped(
+      stop: StopCondition.fromMap(map['stop']),
+      total: map['total']?.toInt() ?? 0,
+    );
+  }
+}
+
+/// bit pattern a hex epc or tid must match. [value] and [mask] are hex and
+/// compared from bit [offset]. a null mask compares every bit of the value
+class TagMask {
+  String value;
+  String? mask;
+  int offset;
+
+  TagMask({required this.value, this.mask, this.offset = 0});
+}
+
+/// read filter class holds the rules native applies to every read before it
+/// reaches the tag store. rules left null or empty are not applied
+class ReadFilter {
+  // weakest rssi accepted
+  int? rssi;
+
+  // antennas accepted
+  List<int>? antennas;
+
+  // epcs accepted, every other epc being rejected, and epcs rejected
+  List<String>? include;
+  List<String>? exclude;
+
+  // patterns the epc, and the tid read into the memory bank data, must match. a tid
+  // mask has the reader read the tid bank of each tag from the next scan started
+  TagMask? epcMask;
+  TagMask? tidMask;
+
+  // ms a tag is rejected for after each read accepted
+  int? interval;
+
+  ReadFilter(
+      {this.rssi,
+      this.antennas,
+      this.include,
+      this.exclude,
+      this.epcMask,
+      this.tidMask,
+      this.interval});
+
+  // create the method call arguments
+  Map<String, dynamic> toMap() {
+    return {
+      "rssi": rssi,
+      "antennas": (antennas ?? []).join(","),
+      "include": (include ?? []).join(","),
+      "exclude": (exclude ?? []).join(","),
+      "epcValue": epcMask?.value ?? "",
+      "epcMask": epcMask?.mask ?? "",
+      "epcOffset": epcMask?.offset ?? 0,
+      "tidValue": tidMask?.value ?? "",
+      "tidMask": tidMask?.mask ?? "",
+      "tidOffset": tidMask?.offset ?? 0,
+      "interval": interval ?? 0
+    };
+  }
+}
+
+/// read filter statistics class holds the reads each rule rejected
+class FilterStatistics {
+  Map<FilterRules, int> hits;
+
+  // reads accepted by every rule, and reads rejected
+  int passed;
+  int rejected;
+
+  FilterStatistics(
+      {required this.hits, required this.passed, required this.rejected});
+
+  // create filter statistics from a map
+  factory FilterStatistics.fromMap(Map<String, dynamic> map) {
+    Map<FilterRules, int> hits = {};
+    for (var rule in map['rules'] ?? []) {
+      var type = toEnum(rule['rule'] as String?, FilterRules.values);
+      if (type != null) hits[type] = rule['hits']?.toInt() ?? 0;
+    }
+    return FilterStatistics(
+      hits: hits,
+      passed: map['passed']?.toInt() ?? 0,
+      rejected: map['rejected']?.toInt() ?? 0,
+    );
+  }
+}
+
+/// trigger statistics class holds the debounce of the handheld trigger
+class TriggerStatistics {
+  // ms the trigger must stay up before a run stops, and the least ms a run
+  // lasts
+  int debounce;
+  int minimum;
+
+  // presses and releases, and presses that continued a stopping run
+  int presses;
+  int releases;
+  int continued;
+
+  // us from a trigger press to the first tag read
+  MetricHistogram firstRead;
+
+  TriggerStatistics(
+      {required this.debounce,
+      required this.minimum,
+      required this.presses,
+      required this.releases,
+      required this.continued,
+      required this.firstRead});
+
+  // create trigger statistics from a map
+  factory TriggerStatistics.fromMap(Map<String, dynamic> map) {
+    return TriggerStatistics(
+      debounce: map['debounce']?.toInt() ?? 0,
+      minimum: map['minimum']?.toInt() ?? 0,
+      presses: map['presses']?.toInt() ?? 0,
+      releases: map['releases']?.toInt() ?? 0,
+      continued: map['continued']?.toInt() ?? 0,
+      firstRead: MetricHistogram.fromMap(map['firstRead']),
     );
   }
 }
 
+/// tracked tags class holds the tags a tracking session reports
+class TrackedTags {
+  String session;
+  List<RfidTag> tags;
+
+  TrackedTags({required this.session, required this.tags});
+}
+
+/// tracking session class
+class TrackingSession {
+  String name;
+  Notifies notify;
+
+  // tags tracked, tags found and reads matched
+  int size;
+  int found;
+  int matched;
+
+  TrackingSession(
+      {required this.name,
+      required this.notify,
+      required this.size,
+      required this.found,
+      required this.matched});
+
+  // create a tracking session from a map
+  factory TrackingSession.fromMap(Map<String, dynamic> map) {
+    return TrackingSession(
+      name: map['session'] ?? "",
+      notify: toEnum(map['notify'] as String?, Notifies.values) ??
+          Notifies.change,
+      size: map['size']?.toInt() ?? 0,
+      found: map['found']?.toInt() ?? 0,
+      matched: map['matched']?.toInt() ?? 0,
+    );
+  }
+}
+
+/// subscription class holds the events and tags an engine gets
+class Subscription {
+  // events the engine gets besides control events. empty gets every event
+  List<Events> events;
+
+  // epc prefixes of the tags in the rfid reports the engine gets. empty gets
+  // every tag
+  List<String> prefixes;
+
+  Subscription({required this.events, required this.prefixes});
+
+  // create a subscription from a map
+  factory Subscription.fromMap(Map<String, dynamic> map) {
+    List<Events> events = [];
+    for (var name in map['events'] ?? []) {
+      var event = toEnum(name as String?, Events.values);
+      if (event != null) events.add(event);
+    }
+    return Subscription(
+      events: events,
+      prefixes: List<String>.from(map['prefixes'] ?? []),
+    );
+  }
+}
+
+/// pipeline trace class holds the latency of rfid reports per stage in us.
+/// native stages are read, store, flush, post and codec. dispatch is the time
+/// from the event channel to the bridge and total the time from the oldest
+/// read of a report to the listeners returning
+class PipelineTrace {
+  Map<String, MetricHistogram> stages;
+
+  PipelineTrace({required this.stages});
+
+  // create a pipeline trace from a map
+  factory PipelineTrace.fromMap(Map<String, dynamic> map) {
+    Map<String, MetricHistogram> stages = {};
+    map.forEach((key, value) => stages[key] = MetricHistogram.fromMap(value));
+    return PipelineTrace(stages: stages);
+  }
+}
+
+/// tag query class holds the result of a native tag store query
+class TagQuery {
+  // number of tags in the native store
+  int total;
+
+  // tags returned by the query
+  List<RfidTag> tags;
+
+  TagQuery({required this.total, required this.tags});
+
+  // create a tag query from a map
+  factory TagQuery.fromMap(Map<String, dynamic> map, Interfaces interface) {
+    List<RfidTag> list = [];
+    List<dynamic> tags = map["tags"] ?? [];
+    for (var i = 0; i < tags.length; i++) {
+      var tag = Map<String, dynamic>.from(tags[i]);
+      tag["eventSource"] = fromEnum(interface);
+      list.add(RfidTag.fromMap(tag));
+    }
+    return TagQuery(total: map['total']?.toInt() ?? 0, tags: list);
+  }
+}
+
 /// connection status class holds the device connection state
 class ConnectionStatus {
   Status status = Status.unknown;
 
+  // true when connected to a device already connected by another engine or
+  // kept reading in the background
+  bool shared = false;
+
   ConnectionStatus({
     required this.status,
+    this.shared = false,
   });
 
   // create a connection status from a map
   factory ConnectionStatus.fromMap(Map<String, dynamic> map) {
     return ConnectionStatus(
       status: toEnum(map['status'], Status.values) ?? Status.unknown,
+      shared: map['shared'] == true,
     );
   }
 }
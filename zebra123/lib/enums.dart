@@ -12,6 +12,41 @@ enum Interfaces { rfidapi3, datawedge, unknown }
 /// zebra method request parameters
 enum Requests { start, stop, unknown }
 
+/// per tag read statistics that can be included in rfid reports
+enum Statistics {
+  reads,
+  firstSeen,
+  lastSeen,
+  rssiMin,
+  rssiMax,
+  rssiMean,
+  antennas,
+  rate
+}
+
+/// native tag store queries
+enum Queries { count, page, prefix, top, clear }
+
+/// native tag store sort order. both sort descending
+enum Sorts { lastSeen, rssi }
+
+/// what happens to rfid tags held back while flutter has no credit for
+/// another report. merge keeps merging them in the native store, dropOldest
+/// stops reporting the oldest and spill moves the oldest to disk
+enum Overflows { merge, dropOldest, spill }
+
+/// when a tracking session reports a tag. first reports the first read of
+/// each tag, change also reports reads from another antenna or at another
+/// rssi and every reports every read
+enum Notifies { first, change, every }
+
+/// condition the reader ends a scan on. duration runs for the timeout, tags
+/// ends once count tags are read and attempts after count inventory rounds
+enum Stops { duration, tags, attempts }
+
+/// native read filter rules, in the order they are evaluated
+enum FilterRules { rssi, antenna, exclude, include, epcMask, tidMask, interval }
+
 /// zebra events
 enum Events {
   readRfid,
@@ -23,6 +58,14 @@ enum Events {
   stopRead,
   writeFail,
   writeSuccess,
+  readGtin,
+  manifestProgress,
+  nearestTags,
+  estimate,
+  metrics,
+  batch,
+  rfidSnapshot,
+  trackedTags,
   unknown
 }
 
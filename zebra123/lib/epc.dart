@@ -0,0 +1,116 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+/// compact encoding of epc lists, matching native. each epc is written as the
+/// number of leading digits it shares with the previous one followed by the
+/// remaining digits packed two to a byte. epcs that aren't upper case hex are
+/// written as text
+class EpcCodec {
+  static const int _version = 1;
+  static const _digits = '0123456789ABCDEF';
+
+  /// encodes the epcs in the order given. sort them first for the best
+  /// compression
+  static Uint8List encode(List<String> epcs) {
+    var out = BytesBuilder(copy: false);
+    out.addByte(_version);
+    _writeVarint(out, epcs.length);
+
+    var previous = "";
+    for (var epc in epcs) {
+      if (!_isHex(epc)) {
+        var text = utf8.encode(epc);
+        _writeVarint(out, 0);
+        _writeVarint(out, (text.length << 1) | 1);
+        out.add(text);
+        previous = "";
+        continue;
+      }
+
+      // digits shared with the previous epc
+      var shared = 0;
+      var max = epc.length < previous.length ? epc.length : previous.length;
+      while (shared < max &&
+          epc.codeUnitAt(shared) == previous.codeUnitAt(shared)) {
+        shared++;
+      }
+
+      var length = epc.length - shared;
+      _writeVarint(out, shared);
+      _writeVarint(out, length << 1);
+      for (var i = 0; i < length; i += 2) {
+        var high = _digits.indexOf(epc[shared + i]);
+        var low = i + 1 < length ? _digits.indexOf(epc[shared + i + 1]) : 0;
+        out.addByte((high << 4) | low);
+      }
+      previous = epc;
+    }
+    return out.takeBytes();
+  }
+
+  /// decodes the epcs. returns an empty list if the encoding is invalid
+  static List<String> decode(Uint8List bytes) {
+    List<String> epcs = [];
+    if (bytes.isEmpty || bytes[0] > _version) return epcs;
+
+    try {
+      var at = [1];
+      var count = _readVarint(bytes, at);
+
+      var previous = "";
+      for (var n = 0; n < count; n++) {
+        var shared = _readVarint(bytes, at);
+        var header = _readVarint(bytes, at);
+        var length = header >> 1;
+
+        if (header & 1 != 0) {
+          previous = "";
+          epcs.add(utf8.decode(bytes.sublist(at[0], at[0] + length)));
+          at[0] += length;
+          continue;
+        }
+
+        var epc = StringBuffer(previous.substring(0, shared));
+        for (var i = 0; i < length; i++) {
+          var b = bytes[at[0] + i ~/ 2];
+          epc.write(_digits[i % 2 == 0 ? b >> 4 : b & 0x0F]);
+        }
+        at[0] += (length + 1) ~/ 2;
+
+        previous = epc.toString();
+        epcs.add(previous);
+      }
+    } catch (e) {
+      epcs.clear();
+    }
+    return epcs;
+  }
+
+  // upper case hex only, so a decoded epc is always the epc encoded
+  static bool _isHex(String epc) {
+    for (var i = 0; i < epc.length; i++) {
+      var c = epc.codeUnitAt(i);
+      if (!(c >= 0x30 && c <= 0x39) && !(c >= 0x41 && c <= 0x46)) return false;
+    }
+    return epc.isNotEmpty;
+  }
+
+  static void _writeVarint(BytesBuilder out, int value) {
+    while (value > 0x7F) {
+      out.addByte((value & 0x7F) | 0x80);
+      value >>= 7;
+    }
+    out.addByte(value);
+  }
+
+  static int _readVarint(Uint8List bytes, List<int> at) {
+    var value = 0;
+    var shift = 0;
+    while (true) {
+      var b = bytes[at[0]++];
+      value |= (b & 0x7F) << shift;
+      if (b & 0x80 == 0) return value;
+      shift += 7;
+    }
+  }
+}
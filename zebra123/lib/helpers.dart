@@ -30,3 +30,15 @@ bool? toBool(dynamic s) {
     return null;
   }
 }
+
+/// Returns a DateTime given milliseconds since epoch
+DateTime? toDate(dynamic ms) {
+  try {
+    if (ms == null) return null;
+    if (ms is int) return DateTime.fromMillisecondsSinceEpoch(ms);
+    var i = int.tryParse(ms.toString());
+    return i != null ? DateTime.fromMillisecondsSinceEpoch(i) : null;
+  } catch (e) {
+    return null;
+  }
+}
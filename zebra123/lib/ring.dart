@@ -0,0 +1,171 @@
+import 'dart:ffi';
+import 'dart:typed_data';
+
+import 'package:ffi/ffi.dart';
+
+import 'classes.dart';
+import 'enums.dart';
+import 'helpers.dart';
+
+typedef _OpenNative = Int32 Function(Pointer<Utf8> path, Int32 flags);
+typedef _Open = int Function(Pointer<Utf8> path, int flags);
+typedef _CloseNative = Int32 Function(Int32 fd);
+typedef _Close = int Function(int fd);
+typedef _MmapNative = Pointer<Uint8> Function(Pointer<Void> address,
+    IntPtr length, Int32 protection, Int32 flags, Int32 fd, IntPtr offset);
+typedef _Mmap = Pointer<Uint8> Function(Pointer<Void> address, int length,
+    int protection, int flags, int fd, int offset);
+typedef _MunmapNative = Int32 Function(Pointer<Uint8> address, IntPtr length);
+typedef _Munmap = int Function(Pointer<Uint8> address, int length);
+
+/// reads the tag records native writes to the shared ring. the ring file is
+/// mapped through ffi, so the tags cross without a codec copy. native only
+/// sends the range of records written with each report
+class TagRing {
+  static const int _magic = 0x5A524E47;
+  static const int _version = 1;
+
+  // header offsets
+  static const int _header = 64;
+  static const int _recordAt = 8;
+  static const int _capacityAt = 12;
+  static const int _tailAt = 24;
+
+  // record offsets
+  static const int _epcLengthAt = 0;
+  static const int _antennaAt = 2;
+  static const int _rssiAt = 4;
+  static const int _distanceAt = 6;
+  static const int _readsAt = 8;
+  static const int _rssiMinAt = 12;
+  static const int _rssiMaxAt = 14;
+  static const int _firstSeenAt = 16;
+  static const int _lastSeenAt = 24;
+  static const int _rssiTotalAt = 32;
+  static const int _sizeAt = 40;
+  static const int _epcAt = 44;
+
+  static const int _readWrite = 2;
+  static const int _protection = 3;
+  static const int _shared = 1;
+
+  static final _libc = DynamicLibrary.process();
+  static final _open = _libc.lookupFunction<_OpenNative, _Open>('open');
+  static final _close = _libc.lookupFunction<_CloseNative, _Close>('close');
+  static final _mmap = _libc.lookupFunction<_MmapNative, _Mmap>('mmap');
+  static final _munmap =
+      _libc.lookupFunction<_MunmapNative, _Munmap>('munmap');
+
+  static const _digits = '0123456789ABCDEF';
+
+  final Pointer<Uint8> _base;
+  final int _length;
+  final ByteData _data;
+  final int _record;
+  final int _capacity;
+
+  TagRing._(this._base, this._length, this._data, this._record, this._capacity);
+
+  /// maps the ring file. returns null if it can't be mapped
+  static TagRing? open(String file, int length) {
+    final path = file.toNativeUtf8();
+    try {
+      final fd = _open(path, _readWrite);
+      if (fd < 0) return null;
+
+      final base =
+          _mmap(nullptr.cast<Void>(), length, _protection, _shared, fd, 0);
+      _close(fd);
+      if (base.address == -1 || base.address == 0xFFFFFFFF) return null;
+
+      final data = base.asTypedList(length).buffer.asByteData();
+      if (data.getUint32(0, Endian.little) != _magic ||
+          data.getUint32(4, Endian.little) > _version) {
+        _munmap(base, length);
+        return null;
+      }
+
+      return TagRing._(
+          base,
+          length,
+          data,
+          data.getInt32(_recordAt, Endian.little),
+          data.getInt32(_capacityAt, Endian.little));
+    } finally {
+      malloc.free(path);
+    }
+  }
+
+  /// reads records [from] to [to] and frees their slots
+  List<RfidTag> read(int from, int to, List<Statistics> statistics,
+      Interfaces interface) {
+    List<RfidTag> list = [];
+    for (var n = from; n < to; n++) {
+      var at = _header + (n % _capacity) * _record;
+      list.add(_read(at, statistics, interface));
+    }
+
+    // native may now reuse the slots
+    _data.setInt64(_tailAt, to, Endian.little);
+    return list;
+  }
+
+  RfidTag _read(int at, List<Statistics> statistics, Interfaces interface) {
+    var length = _data.getUint8(at + _epcLengthAt);
+    var epc = StringBuffer();
+    for (var i = 0; i < length; i++) {
+      var b = _data.getUint8(at + _epcAt + i);
+      epc.write(_digits[b >> 4]);
+      epc.write(_digits[b & 0x0F]);
+    }
+
+    var reads = _data.getInt32(at + _readsAt, Endian.little);
+    var rssi = _data.getInt16(at + _rssiAt, Endian.little);
+    var firstSeen = _data.getInt64(at + _firstSeenAt, Endian.little);
+    var lastSeen = _data.getInt64(at + _lastSeenAt, Endian.little);
+    var total = _data.getInt64(at + _rssiTotalAt, Endian.little);
+    var elapsed = lastSeen - firstSeen;
+
+    bool has(Statistics statistic) => statistics.contains(statistic);
+    return RfidTag(
+      epc: epc.toString(),
+      antenna: _data.getInt16(at + _antennaAt, Endian.little),
+      rssi: rssi,
+      distance: _data.getInt16(at + _distanceAt, Endian.little),
+      memoryBankData: '',
+      lockData: '',
+      size: _data.getInt32(at + _sizeAt, Endian.little),
+      seen: _seen(lastSeen),
+      interface: interface,
+      reads: has(Statistics.reads) ? reads : null,
+      firstSeen: has(Statistics.firstSeen) ? toDate(firstSeen) : null,
+      lastSeen: has(Statistics.lastSeen) ? toDate(lastSeen) : null,
+      rssiMin: has(Statistics.rssiMin)
+          ? _data.getInt16(at + _rssiMinAt, Endian.little)
+          : null,
+      rssiMax: has(Statistics.rssiMax)
+          ? _data.getInt16(at + _rssiMaxAt, Endian.little)
+          : null,
+      rssiMean: has(Statistics.rssiMean)
+          ? (reads > 0 ? total / reads : rssi.toDouble())
+          : null,
+      rate: has(Statistics.rate)
+          ? (elapsed > 0 ? reads * 1000.0 / elapsed : reads.toDouble())
+          : null,
+    );
+  }
+
+  // formats a time the way native formats the seen date
+  static String _seen(int ms) {
+    var t = DateTime.fromMillisecondsSinceEpoch(ms);
+    String two(int n) => n.toString().padLeft(2, '0');
+    var date = "${two(t.day)}/${two(t.month)}/${t.year}";
+    var time = "${two(t.hour)}:${two(t.minute)}:${two(t.second)}";
+    return "$date $time.${t.millisecond.toString().padLeft(3, '0')}";
+  }
+
+  /// unmaps the ring
+  void close() {
+    _munmap(_base, _length);
+  }
+}
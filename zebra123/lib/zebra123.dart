@@ -3,6 +3,7 @@ export 'enums.dart';
 export 'classes.dart';
 
 import 'dart:async';
+import 'dart:typed_data';
 import 'classes.dart';
 import 'bridge.dart';
 import 'enums.dart';
@@ -62,10 +63,11 @@ class Zebra123 {
   }
 
 
-  // start scanning for rfid tags
-  Future startScanning() async {
+  // start scanning for rfid tags. the reader ends the scan itself once the
+  // [stop] condition is met, and the tags are reported straight away
+  Future startScanning({StopCondition? stop}) async {
     if (_bridge.contains(this)) {
-      _bridge.scan(Requests.start);
+      _bridge.scan(Requests.start, stop: stop);
     }
   }
 
@@ -90,6 +92,322 @@ class Zebra123 {
     }
   }
 
+  // start counting rfid tags per product (gtin)
+  Future startAggregating({int? interval}) async {
+    if (_bridge.contains(this)) {
+      _bridge.aggregate(Requests.start, interval: interval);
+    }
+  }
+
+  // stop counting rfid tags per product (gtin)
+  Future stopAggregating() async {
+    if (_bridge.contains(this)) {
+      _bridge.aggregate(Requests.stop);
+    }
+  }
+
+  // load a manifest of expected rfid tags and reconcile reads against it
+  Future startManifest(List<String> tags,
+      {bool autoStop = false, int? interval}) async {
+    if (_bridge.contains(this)) {
+      _bridge.manifest(Requests.start,
+          tags: tags, autoStop: autoStop, interval: interval);
+    }
+  }
+
+  // unload the manifest. a final progress event with the missing tags is sent
+  Future stopManifest() async {
+    if (_bridge.contains(this)) {
+      _bridge.manifest(Requests.stop);
+    }
+  }
+
+  // set the per tag read statistics included in rfid reports
+  Future setStatistics(List<Statistics> fields) async {
+    if (_bridge.contains(this)) {
+      _bridge.statistics(fields);
+    }
+  }
+
+  // start reporting the [size] strongest tags, strongest first, at most once every [interval] ms
+  Future startNearest({int? size, int? interval}) async {
+    if (_bridge.contains(this)) {
+      _bridge.nearest(Requests.start, size: size, interval: interval);
+    }
+  }
+
+  // stop reporting the strongest tags
+  Future stopNearest() async {
+    if (_bridge.contains(this)) {
+      _bridge.nearest(Requests.stop);
+    }
+  }
+
+  // start estimating the number of unique tags read instead of storing them.
+  // estimates are optionally kept per antenna and per time [bucket] in ms
+  Future startEstimating({bool perAntenna = false, int? bucket}) async {
+    if (_bridge.contains(this)) {
+      _bridge.estimate(Requests.start, perAntenna: perAntenna, bucket: bucket);
+    }
+  }
+
+  // stop estimating. a final estimate event is sent
+  Future stopEstimating() async {
+    if (_bridge.contains(this)) {
+      _bridge.estimate(Requests.stop);
+    }
+  }
+
+  // returns the current estimate including its sketch registers.
+  // registers from another reader or session can be merged in using [merge]
+  Future<UniqueEstimate?> getSketch({Uint8List? merge}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.sketch(merge: merge);
+  }
+
+  // set the memory budget in bytes for the native tag store. 0 is unlimited.
+  // once exceeded, the least recently read tags are spilled to disk
+  Future<MemoryBudget?> setMemoryBudget(int bytes) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.budget(bytes: bytes);
+  }
+
+  // returns the native tag store memory budget and current usage
+  Future<MemoryBudget?> getMemoryBudget() async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.budget();
+  }
+
+  // start recording the raw reads, barcodes and trigger events to [file].
+  // a file name without a path is placed in the app's files directory
+  Future<Recording?> startRecording({String? file}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.record(Requests.start, file: file);
+  }
+
+  // stop recording. returns the finished recording
+  Future<Recording?> stopRecording() async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.record(Requests.stop);
+  }
+
+  // replay a recording through the rfid pipeline in place of the reader.
+  // [speed] 1 is real time, 10 is ten times faster and 0 is as fast as possible.
+  // the device disconnects at the end of the recording
+  Future startReplay(String file, {double speed = 1}) async {
+    if (_bridge.contains(this)) {
+      _bridge.replay(Requests.start, file: file, speed: speed);
+    }
+  }
+
+  // stop replaying and reconnect the reader
+  Future stopReplay() async {
+    if (_bridge.contains(this)) {
+      _bridge.replay(Requests.stop);
+    }
+  }
+
+  // returns the native read path metrics. rates are per second since the
+  // previous snapshot. [reset] clears the metrics once returned
+  Future<Metrics?> getMetrics({bool reset = false}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.stats(reset: reset);
+  }
+
+  // start sending a metrics event every [interval] ms
+  Future startMetrics({int interval = 1000}) async {
+    if (_bridge.contains(this)) {
+      _bridge.metrics(Requests.start, interval: interval);
+    }
+  }
+
+  // stop sending metrics events
+  Future stopMetrics() async {
+    if (_bridge.contains(this)) {
+      _bridge.metrics(Requests.stop);
+    }
+  }
+
+  // keep the device connected and reading in a foreground service once the
+  // flutter engine detaches. [title] and [text] are shown in its notification.
+  // tags read while no engine is attached are held natively, and handed over
+  // in a rfidSnapshot event when an engine attaches again. from android 14
+  // the app must hold the BLUETOOTH_CONNECT permission first. returns true if
+  // the service is running
+  Future<bool> startBackground({String? title, String? text}) async {
+    if (!_bridge.contains(this)) return false;
+    return _bridge.background(Requests.start, title: title, text: text);
+  }
+
+  // stop the background service. the device stays connected while an engine
+  // is attached
+  Future stopBackground() async {
+    if (_bridge.contains(this)) {
+      await _bridge.background(Requests.stop);
+    }
+  }
+
+  // sets the ms between native event deliveries. events sent in between are
+  // delivered together, with pending reports merged per tag. 0, the default,
+  // delivers once per frame
+  Future<int?> setDeliveryInterval(int interval) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.delivery(interval: interval);
+  }
+
+  // track [tags] in a session named [name], alongside any other session or
+  // scan. sessions share one inventory run, and their tags are reported to
+  // this listener in trackedTags events as [notify] directs. starting a
+  // session of the same name replaces it. returns the sessions running
+  Future<List<TrackingSession>?> startSession(String name, List<String> tags,
+      {Notifies notify = Notifies.change}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.session(this, Requests.start, name,
+        tags: tags, notify: notify);
+  }
+
+  // stop the tracking session named [name]
+  Future<List<TrackingSession>?> stopSession(String name) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.session(this, Requests.stop, name);
+  }
+
+  // filter rfid reads natively, before they reach the tag store or cross to
+  // flutter. rejected reads don't count towards any statistic. returns the
+  // reads each rule has rejected, which restart at 0
+  Future<FilterStatistics?> setReadFilter(ReadFilter filter) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.filter(Requests.start, spec: filter);
+  }
+
+  // stop filtering rfid reads
+  Future clearReadFilter() async {
+    if (_bridge.contains(this)) {
+      await _bridge.filter(Requests.stop);
+    }
+  }
+
+  // returns the reads each rule of the read filter has rejected
+  Future<FilterStatistics?> getReadFilter() async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.filter(Requests.unknown);
+  }
+
+  // scan in duty cycled windows rather than reading continuously, so a sled
+  // keeps its read rate over a shift instead of throttling once hot. tags are
+  // reported at the end of each window
+  Future<DutyCycleStatus?> startDutyCycle({DutyCycle? cycle}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.cycle(Requests.start, cycle: cycle);
+  }
+
+  // stop the duty cycled scan. returns its final status
+  Future<DutyCycleStatus?> stopDutyCycle() async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.cycle(Requests.stop);
+  }
+
+  // returns the duty of the current window and the reader status it adapted to
+  Future<DutyCycleStatus?> getDutyCycle() async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.cycle(Requests.unknown);
+  }
+
+  // debounce the handheld trigger. a run stops once the trigger has been up
+  // for [debounce] ms and the run has lasted [minimum] ms, so rapid presses
+  // are merged into one run
+  Future<TriggerStatistics?> setTriggerDebounce(
+      {int debounce = 0, int minimum = 0}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.trigger(debounce: debounce, minimum: minimum);
+  }
+
+  // returns the trigger presses and the latency from press to first read
+  Future<TriggerStatistics?> getTriggerStatistics() async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.trigger();
+  }
+
+  // the device is shared by every flutter engine in the process. set the
+  // [events] this engine gets, control events always being sent, and the epc
+  // [prefixes] of the tags in its rfid reports. empty lists get everything
+  Future<Subscription?> subscribe(
+      {List<Events>? events, List<String>? prefixes}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.subscribe(events: events, prefixes: prefixes);
+  }
+
+  // start credit based flow control of rfid reports. native sends at most
+  // [window] reports ahead of the listeners, which return a credit each time
+  // they process one. the tags read meanwhile are held in the native store
+  // and [overflow] applies once more than [limit] are held. dropOldest and
+  // spill hold 10000 when no limit is given
+  Future<FlowControl?> startFlowControl(
+      {int window = 4,
+      Overflows overflow = Overflows.merge,
+      int limit = 0}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.flow(Requests.start,
+        credits: window, overflow: overflow, limit: limit);
+  }
+
+  // stop flow control. held back tags are reported right away
+  Future<FlowControl?> stopFlowControl() async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.flow(Requests.stop);
+  }
+
+  // pass rfid tags to flutter through a ring of [capacity] records shared
+  // with native through ffi rather than through the event channel codec.
+  // tags that don't fit a record are still passed as maps. returns true if
+  // the ring is in use
+  Future<bool> startSharedTransport({int capacity = 8192}) async {
+    if (!_bridge.contains(this)) return false;
+    return _bridge.transport(Requests.start, capacity: capacity);
+  }
+
+  // stop passing rfid tags through the shared ring
+  Future stopSharedTransport() async {
+    if (_bridge.contains(this)) {
+      await _bridge.transport(Requests.stop);
+    }
+  }
+
+  // only report rfid tags that are new or whose antenna or rssi changed since
+  // they were last reported. lost reports are detected by their sequence and
+  // repaired with a rfidSnapshot event holding every tag read
+  Future setDeltaReports(bool enabled) async {
+    if (_bridge.contains(this)) {
+      _bridge.delta(enabled);
+    }
+  }
+
+  // request a rfidSnapshot event holding every tag in the native store. only
+  // this engine gets it, the reports of other engines carrying on as they were
+  Future requestSnapshot() async {
+    if (_bridge.contains(this)) {
+      _bridge.resync();
+    }
+  }
+
+  // returns the per stage latency of rfid reports from the reader to the
+  // listeners. [reset] clears the samples once returned
+  Future<PipelineTrace?> getTrace({bool reset = false}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.trace(reset: reset);
+  }
+
+  // query the native tag store without clearing it.
+  // count returns only the total, page returns [limit] tags from [offset] sorted by [sort],
+  // prefix returns tags whose epc starts with [prefix], top returns the [limit] strongest tags
+  // and clear empties the store
+  Future<TagQuery?> queryTags(Queries query,
+      {int? offset, int? limit, Sorts? sort, String? prefix}) async {
+    if (!_bridge.contains(this)) return null;
+    return _bridge.query(query,
+        offset: offset, limit: limit, sort: sort, prefix: prefix);
+  }
+
   // set device mode
   Future setMode(Modes mode) async {
     if (_bridge.contains(this)) {